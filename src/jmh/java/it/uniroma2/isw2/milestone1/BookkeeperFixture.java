@@ -0,0 +1,248 @@
+package it.uniroma2.isw2.milestone1;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import it.uniroma2.isw2.milestone1.entities.Bug;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Version;
+import it.uniroma2.isw2.milestone1.utils.CommitDecoder;
+import it.uniroma2.isw2.milestone1.utils.CommitSource;
+import it.uniroma2.isw2.milestone1.utils.JiraHelper;
+import it.uniroma2.isw2.milestone1.utils.RestHelper;
+import it.uniroma2.isw2.milestone1.utils.SymbolTable;
+
+/*
+ * Dati dei benchmark presi dalla cache di BOOKKEEPER presente nel repository: le risposte di Github
+ * in .cache/commit-info, nell'ordine delle pagine in .cache/commit-list.
+ * Le risposte di JIRA non sono nel repository: versioni e bug vengono generati in modo deterministico
+ * dalle date dei commit e dalle chiavi BOOKKEEPER-n citate nei messaggi.
+ */
+public class BookkeeperFixture {
+
+	public static final String PROJECT = "BOOKKEEPER";
+
+	private static final Path COMMIT_INFO = Paths.get(".cache", "commit-info", "bookkeeper");
+	private static final Path COMMIT_LIST = Paths.get(".cache", "commit-list", "bookkeeper");
+	private static final String JSON_EXTENSION = ".json";
+	private static final Pattern BUG_KEY = Pattern.compile(PROJECT + "-(\\d+)");
+
+	private static final int VERSIONS = 14;
+	private static final long SEED = 42;
+
+	private final List<String> shas;
+	private final List<byte[]> responses;
+
+	private BookkeeperFixture(List<String> shas, List<byte[]> responses) {
+		this.shas = shas;
+		this.responses = responses;
+	}
+
+	/* Commit dal più vecchio al più recente, soltanto quelli di cui la cache ha la risposta completa */
+	public static BookkeeperFixture load() throws IOException {
+		if (!Files.isDirectory(COMMIT_INFO) || !Files.isDirectory(COMMIT_LIST))
+			throw new IOException(String.format("Cache di %s non trovata in %s: eseguire i benchmark dalla cartella del progetto", PROJECT, COMMIT_INFO.toAbsolutePath()));
+
+		List<String> listed = new ArrayList<>();
+		for (int page = 1; Files.exists(COMMIT_LIST.resolve(page + JSON_EXTENSION)); page++) {
+			JsonArray entries = JsonParser.parseString(new String(Files.readAllBytes(COMMIT_LIST.resolve(page + JSON_EXTENSION)), StandardCharsets.UTF_8)).getAsJsonArray();
+			for (JsonElement entry : entries)
+				listed.add(entry.getAsJsonObject().get("sha").getAsString());
+		}
+		Collections.reverse(listed);
+
+		List<String> shas = new ArrayList<>();
+		List<byte[]> responses = new ArrayList<>();
+		for (String sha : listed) {
+			Path response = COMMIT_INFO.resolve(sha + JSON_EXTENSION);
+			if (Files.exists(response)) {
+				shas.add(sha);
+				responses.add(Files.readAllBytes(response));
+			}
+		}
+		return new BookkeeperFixture(shas, responses);
+	}
+
+	public List<String> getShas() {
+		return this.shas;
+	}
+
+	/* Corpi completi delle risposte di Github, nello stesso ordine di getShas */
+	public List<byte[]> getResponses() {
+		return this.responses;
+	}
+
+	public List<Commit> decodeCommits(SymbolTable paths, SymbolTable authors) throws IOException {
+		List<Commit> commits = new ArrayList<>(this.shas.size());
+		for (int i = 0; i < this.shas.size(); i++) {
+			String sha = this.shas.get(i);
+			commits.add(RestHelper.decode(new ByteArrayInputStream(this.responses.get(i)), reader -> CommitDecoder.decode(reader, sha, paths, authors)));
+		}
+		return commits;
+	}
+
+	/* Commit decodificati in nuovi dizionari, con versioni e bug generati */
+	public Project newProject() throws IOException {
+		return new Project(this);
+	}
+
+	public static class Project {
+
+		private final SymbolTable paths;
+		private final SymbolTable authors;
+		private final List<Commit> commits;
+		private final List<Version> versions;
+		private final List<Bug> bugs;
+
+		private Project(BookkeeperFixture fixture) throws IOException {
+			this.paths = new SymbolTable();
+			this.authors = new SymbolTable();
+			this.commits = fixture.decodeCommits(this.paths, this.authors);
+			for (int i = 0; i < this.commits.size(); i++)
+				this.commits.get(i).setId(i); // posizione nella storia, come nello stream di DatasetBuilder
+			this.versions = versions(this.commits);
+			this.bugs = bugs(this.commits, this.versions);
+		}
+
+		public List<Commit> getCommits() {
+			return this.commits;
+		}
+
+		public List<Version> getVersions() {
+			return this.versions;
+		}
+
+		public List<Bug> getBugs() {
+			return this.bugs;
+		}
+
+		/* Builder senza accessi alla rete; i file del dataset vengono scritti in outputsFolder */
+		public DatasetBuilder newBuilder(Path outputsFolder) {
+			return new DatasetBuilder(PROJECT, outputsFolder.toString() + "/", this.paths, this.authors,
+					new FixtureCommitSource(this.commits), new FixtureJiraHelper(this.versions, this.bugs));
+		}
+
+	}
+
+	/* Release equidistanti: la release target (metà delle versioni) cade entro la storia in cache, come nel replay reale */
+	private static List<Version> versions(List<Commit> commits) {
+		LocalDateTime first = commits.get(0).getDate().toLocalDate().atStartOfDay();
+		Duration step = Duration.between(first, commits.get(commits.size() - 1).getDate()).dividedBy(VERSIONS / 2 + 2);
+
+		List<Version> versions = new ArrayList<>();
+		for (int i = 0; i < VERSIONS; i++) {
+			Version v = new Version(String.format("4.%d.0", i), first.plus(step.multipliedBy(i + 1L)).toLocalDate().atStartOfDay());
+			v.setId(i + 1);
+			versions.add(v);
+		}
+		return versions;
+	}
+
+	/* Un bug per ogni chiave citata nei messaggi, con FV, data di apertura e AV pseudo-casuali */
+	private static List<Bug> bugs(List<Commit> commits, List<Version> versions) {
+		TreeSet<Integer> keys = new TreeSet<>();
+		for (Commit c : commits) {
+			Matcher m = BUG_KEY.matcher(c.getMessage());
+			while (m.find())
+				keys.add(Integer.parseInt(m.group(1)));
+		}
+
+		Random random = new Random(SEED);
+		List<Bug> bugs = new ArrayList<>();
+		for (int key : keys) {
+			int fv = 1 + random.nextInt(versions.size() - 1);
+			int ov = random.nextInt(fv + 1);
+			LocalDateTime created = (ov == 0) ? versions.get(0).getReleaseDate().minusDays(10) : versions.get(ov - 1).getReleaseDate().plusDays(1);
+
+			JsonObject fields = new JsonObject();
+			JsonArray fixVersions = new JsonArray();
+			fixVersions.add(toJson(versions.get(fv)));
+			fields.add("fixVersions", fixVersions);
+			fields.addProperty("created", created.toLocalDate() + "T10:00:00.000+0000");
+			JsonArray affectedVersions = new JsonArray();
+			if (random.nextInt(3) == 0)
+				affectedVersions.add(toJson(versions.get(random.nextInt(ov + 1))));
+			fields.add("versions", affectedVersions);
+
+			JsonObject issue = new JsonObject();
+			issue.addProperty("key", PROJECT + "-" + key);
+			issue.add("fields", fields);
+			Bug b = Bug.fromJsonObject(issue, versions);
+			if (b != null)
+				bugs.add(b);
+		}
+		bugs.sort(Comparator.comparing(b -> b.getOv().getReleaseDate()));
+		return bugs;
+	}
+
+	private static JsonObject toJson(Version v) {
+		JsonObject json = new JsonObject();
+		json.addProperty("name", v.getName());
+		json.addProperty("releaseDate", v.getReleaseDate().toLocalDate().toString());
+		return json;
+	}
+
+	private static class FixtureCommitSource implements CommitSource {
+
+		private final List<Commit> commits;
+
+		FixtureCommitSource(List<Commit> commits) {
+			this.commits = commits;
+		}
+
+		/* La cache contiene già soltanto la storia che serve al replay */
+		@Override
+		public List<Commit> retrieveCommits(LocalDateTime targetDate) {
+			return new ArrayList<>(this.commits);
+		}
+
+		@Override
+		public void close() {
+			// nessuna risorsa
+		}
+
+	}
+
+	private static class FixtureJiraHelper extends JiraHelper {
+
+		private final List<Version> versions;
+		private final List<Bug> bugs;
+
+		FixtureJiraHelper(List<Version> versions, List<Bug> bugs) {
+			super(PROJECT);
+			this.versions = versions;
+			this.bugs = bugs;
+		}
+
+		@Override
+		public List<Version> retrieveVersions() {
+			return this.versions;
+		}
+
+		@Override
+		public List<Bug> retrieveBugs(List<Version> versions) {
+			return this.bugs;
+		}
+
+	}
+
+}
@@ -0,0 +1,211 @@
+package it.uniroma2.isw2.milestone1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.uniroma2.isw2.milestone1.entities.AnalyzedFile;
+import it.uniroma2.isw2.milestone1.entities.Bug;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Metrics;
+import it.uniroma2.isw2.milestone1.utils.DatasetWriter;
+
+/*
+ * Benchmark delle fasi di DatasetBuilder sui dati di BookkeeperFixture.
+ * Le fasi che modificano lo stato (proportion, collegamento dei bug, calcolo delle metriche che azzera i contatori
+ * della release) ripristinano lo stato prima di ogni invocazione, fuori dalla misura.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatasetBuilderBenchmark {
+
+	@State(Scope.Thread)
+	public static class Pipeline {
+
+		private Path outputs;
+		private DatasetBuilder builder;
+		private List<Commit> commits;
+		private List<Bug> bugs;
+		private List<Bug> missingIv;
+		private int targetId;
+		private int replayedCommits;
+		private List<List<Metrics>> releases;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			BookkeeperFixture.Project project = BookkeeperFixture.load().newProject();
+			this.outputs = Files.createTempDirectory("milestone1-jmh");
+			this.commits = project.getCommits();
+			this.bugs = project.getBugs();
+			this.missingIv = new ArrayList<>();
+			for (Bug b : this.bugs)
+				if (b.getIv() == null)
+					this.missingIv.add(b);
+
+			this.builder = project.newBuilder(this.outputs);
+			this.targetId = this.builder.prepare();
+			this.releases = new ArrayList<>();
+			this.replayedCommits = replay(this.releases);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			try (Stream<Path> files = Files.list(this.outputs)) {
+				for (Path f : (Iterable<Path>) files::iterator)
+					Files.delete(f);
+			}
+			Files.delete(this.outputs);
+		}
+
+		/* Stesso replay di createDataset, senza scrittura: restituisce il numero di commit applicati */
+		int replay(List<List<Metrics>> computed) {
+			int commitsIdx = replayTo(this.targetId - 1, computed);
+			computed.add(this.builder.computeRelease(this.targetId - 1));
+			return commitsIdx;
+		}
+
+		/* Replay fino al cambio di release successivo a versionIdx, le cui metriche restano da calcolare */
+		int replayTo(int versionIdx, List<List<Metrics>> computed) {
+			this.builder.resetReplay();
+			int versionsIdx = 0;
+			int commitsIdx = 0;
+			while (true) {
+				Commit c = this.commits.get(commitsIdx);
+				if (this.builder.needSwitchVersion(versionsIdx, c)) {
+					if (versionsIdx == versionIdx)
+						return commitsIdx;
+					List<Metrics> release = this.builder.computeRelease(versionsIdx++);
+					if (computed != null)
+						computed.add(release);
+				}
+				this.builder.applyDiff(c);
+				commitsIdx++;
+			}
+		}
+
+	}
+
+	/* File replayati fino all'ultima release, con le metriche non ancora calcolate */
+	@State(Scope.Thread)
+	public static class PendingRelease {
+
+		private int versionIdx;
+
+		@Setup(Level.Invocation)
+		public void setUp(Pipeline pipeline) {
+			this.versionIdx = pipeline.targetId - 1;
+			pipeline.replayTo(this.versionIdx, null);
+		}
+
+	}
+
+	/* Calcolo delle metriche di una release in sequenza (0) o ripartito tra i core (1: soglia di un file) */
+	@State(Scope.Benchmark)
+	public static class MetricsThreshold {
+
+		private static final String PROPERTY = "milestone1.metrics.parallelThreshold";
+
+		@Param({ "0", "1" })
+		public String threshold;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			System.setProperty(PROPERTY, this.threshold);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			System.clearProperty(PROPERTY);
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class UnlinkedBugs {
+
+		@Setup(Level.Invocation)
+		public void setUp(Pipeline pipeline) {
+			for (Bug b : pipeline.bugs)
+				b.clearInfectedFiles();
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class MissingIv {
+
+		@Setup(Level.Invocation)
+		public void setUp(Pipeline pipeline) {
+			for (Bug b : pipeline.missingIv)
+				b.setIv(null);
+		}
+
+	}
+
+	@Benchmark
+	public List<AnalyzedFile> applyDiff(Pipeline pipeline) {
+		pipeline.builder.resetReplay();
+		for (int i = 0; i < pipeline.replayedCommits; i++)
+			pipeline.builder.applyDiff(pipeline.commits.get(i));
+		return pipeline.builder.getFiles();
+	}
+
+	@Benchmark
+	public List<Metrics> computeMetrics(Pipeline pipeline, PendingRelease pending, MetricsThreshold threshold) {
+		return pipeline.builder.computeRelease(pending.versionIdx);
+	}
+
+	/* applyDiff e computeMetrics per tutte le release del dataset */
+	@Benchmark
+	public List<List<Metrics>> replay(Pipeline pipeline) {
+		List<List<Metrics>> computed = new ArrayList<>();
+		pipeline.replay(computed);
+		return computed;
+	}
+
+	@Benchmark
+	public List<Bug> linkBugs(Pipeline pipeline, UnlinkedBugs unlinked) {
+		for (Commit c : pipeline.commits)
+			pipeline.builder.linkBugs(c);
+		return pipeline.bugs;
+	}
+
+	@Benchmark
+	public List<Bug> proportion(Pipeline pipeline, MissingIv missing) {
+		pipeline.builder.proportion();
+		return pipeline.bugs;
+	}
+
+	/* Scrittura dei file csv e arff di tutte le release */
+	@Benchmark
+	public long writeDataset(Pipeline pipeline) throws IOException {
+		DatasetWriter writer = new DatasetWriter(pipeline.outputs.resolve("dataset.csv"), pipeline.outputs.resolve("dataset.arff"), BookkeeperFixture.PROJECT);
+		try (DatasetWriter w = writer) {
+			for (List<Metrics> release : pipeline.releases)
+				w.writeRelease(release);
+		}
+		return writer.getRows();
+	}
+
+}
@@ -0,0 +1,156 @@
+package it.uniroma2.isw2.milestone1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import it.uniroma2.isw2.milestone1.utils.SyntheticHistory;
+
+/*
+ * Costruisce i dataset di storie sintetiche di dimensione crescente (numero di commit indicato come argomento,
+ * di default 1000, 10000 e 100000) e registra tempo e picco di heap di ogni fase in outputs/scale/scale.csv, ad esempio:
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=it.uniroma2.isw2.milestone1.ScaleHarness -Djmh.args="10000 100000 1000000"
+ * La forma della storia si regola con milestone1.scale.versions, .releaseCadenceDays, .filesPerCommit e .authors.
+ * Come per i progetti reali servono owner.dat e token.key, ma tutte le risposte vengono lette dalla cache generata.
+ */
+public class ScaleHarness implements BuildStageListener {
+
+	private static final Logger LOGGER = Logger.getLogger(ScaleHarness.class.getName());
+
+	private static final int[] DEFAULT_SIZES = { 1000, 10000, 100000 };
+	private static final String PROJECT_FORMAT = SyntheticHistory.PROJECT_PREFIX + "%d"; // progetto sintetico, uno per dimensione
+	private static final String OUTPUTS_FOLDER = "outputs/scale/";
+	private static final String RESULTS_FILE = "scale.csv";
+	private static final String CSV_HEADER = "Project,Commits,Stage,Millis,PeakHeapMB";
+	private static final String TOTAL = "TOTAL";
+	private static final String FAILED = "FAILED";
+	private static final long MB = 1024L * 1024L;
+
+	private static final String PREFIX = "milestone1.scale.";
+	private static final String VERSIONS = PREFIX + "versions";
+	private static final String RELEASE_CADENCE_DAYS = PREFIX + "releaseCadenceDays";
+	private static final String FILES_PER_COMMIT = PREFIX + "filesPerCommit";
+	private static final String AUTHORS = PREFIX + "authors";
+
+	private final List<MemoryPoolMXBean> heapPools;
+	private final List<String> rows;
+	private int commits;
+	private long stageStart;
+	private long buildPeak;
+
+	private ScaleHarness() {
+		this.heapPools = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				this.heapPools.add(pool);
+		this.rows = new ArrayList<>();
+	}
+
+	/* Somma dei picchi dei pool di heap dall'ultimo azzeramento */
+	private long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : this.heapPools)
+			peak += pool.getPeakUsage().getUsed();
+		return peak;
+	}
+
+	private void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : this.heapPools)
+			pool.resetPeakUsage();
+	}
+
+	@Override
+	public void stageStarted(String projectName, BuildStage stage) {
+		resetPeakHeap();
+		this.stageStart = System.nanoTime();
+	}
+
+	@Override
+	public void stageCompleted(String projectName, BuildStage stage) {
+		long millis = (System.nanoTime() - this.stageStart) / 1_000_000;
+		long peak = peakHeap();
+		this.buildPeak = Math.max(this.buildPeak, peak);
+		addRow(projectName, stage.name(), millis, peak);
+	}
+
+	private void addRow(String projectName, String stage, long millis, long peak) {
+		this.rows.add(String.format(Locale.ROOT, "%s,%d,%s,%d,%.1f", projectName, this.commits, stage, millis, (double) peak / MB));
+		LOGGER.log(Level.INFO, "{0} ({1} commit) {2}: {3} ms, picco di heap {4} MB", new Object[] { projectName, this.commits, stage, millis, peak / MB });
+	}
+
+	private void run(int size) {
+		SyntheticHistory history = new SyntheticHistory(String.format(PROJECT_FORMAT, size), size);
+		Integer value;
+		if ((value = Integer.getInteger(VERSIONS)) != null)
+			history.setVersions(value);
+		if ((value = Integer.getInteger(RELEASE_CADENCE_DAYS)) != null)
+			history.setReleaseCadenceDays(value);
+		if ((value = Integer.getInteger(FILES_PER_COMMIT)) != null)
+			history.setFilesPerCommit(value);
+		if ((value = Integer.getInteger(AUTHORS)) != null)
+			history.setAuthors(value);
+
+		this.commits = size;
+		this.buildPeak = 0;
+		String projectName = history.getProjectName();
+		try {
+			history.write();
+			System.gc(); // le misure partono senza i residui della generazione
+
+			long start = System.nanoTime();
+			DatasetBuilder builder = new DatasetBuilder(projectName, OUTPUTS_FOLDER);
+			builder.setStageListener(this);
+			builder.build();
+			addRow(projectName, TOTAL, (System.nanoTime() - start) / 1_000_000, this.buildPeak);
+		} catch (Exception e) {
+			LOGGER.log(Level.SEVERE, String.format("Errore nella costruzione di %s: %s", projectName, e.getMessage()), e);
+			this.rows.add(String.format(Locale.ROOT, "%s,%d,%s,,", projectName, size, FAILED));
+		}
+	}
+
+	private void write() throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(OUTPUTS_FOLDER, RESULTS_FILE))) {
+			writer.write(CSV_HEADER);
+			writer.newLine();
+			for (String row : this.rows) {
+				writer.write(row);
+				writer.newLine();
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+
+		/* Le risposte vengono lette soltanto dalla cache generata e ogni dimensione viene elaborata da zero */
+		System.setProperty("milestone1.jira.offline", "true");
+		System.setProperty("milestone1.checkpoint", "false");
+
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i].trim());
+		}
+
+		ScaleHarness harness = new ScaleHarness();
+		try {
+			Files.createDirectories(Paths.get(OUTPUTS_FOLDER));
+			for (int size : sizes)
+				harness.run(size);
+			harness.write();
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, String.format("Errore nella scrittura dei risultati: %s", e.getMessage()));
+		}
+
+	}
+
+}
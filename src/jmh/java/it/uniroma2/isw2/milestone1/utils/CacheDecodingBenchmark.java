@@ -0,0 +1,102 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.uniroma2.isw2.milestone1.BookkeeperFixture;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+
+/*
+ * Benchmark della decodifica dei commit di BookkeeperFixture letti dalla cache, come in GitHelper.retrieveCommitBySHA:
+ * risposte complete di Github (formato precedente) e record ridotti, in memoria e da un PackedCache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheDecodingBenchmark {
+
+	private List<String> shas;
+	private List<byte[]> responses;
+	private Path packPath;
+	private PackedCache cache;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BookkeeperFixture fixture = BookkeeperFixture.load();
+		this.shas = fixture.getShas();
+		this.responses = fixture.getResponses();
+
+		SymbolTable paths = new SymbolTable();
+		SymbolTable authors = new SymbolTable();
+		List<Commit> commits = fixture.decodeCommits(paths, authors);
+
+		this.packPath = Files.createTempFile("milestone1-jmh", ".pack");
+		Files.delete(this.packPath);
+		this.cache = new PackedCache(this.packPath);
+		for (int i = 0; i < this.shas.size(); i++) {
+			this.cache.put(GitHelper.KEY_COMMIT_INFO + this.shas.get(i), this.responses.get(i));
+			this.cache.put(GitHelper.KEY_COMMIT_RECORD + this.shas.get(i), CommitRecords.encode(commits.get(i), paths, authors));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.cache.close();
+		Files.deleteIfExists(this.packPath);
+	}
+
+	/* Solo parsing delle risposte complete, già in memoria */
+	@Benchmark
+	public List<Commit> decodeResponses() throws IOException {
+		SymbolTable paths = new SymbolTable();
+		SymbolTable authors = new SymbolTable();
+		List<Commit> commits = new ArrayList<>(this.shas.size());
+		for (int i = 0; i < this.shas.size(); i++) {
+			String sha = this.shas.get(i);
+			commits.add(RestHelper.decode(new ByteArrayInputStream(this.responses.get(i)), reader -> CommitDecoder.decode(reader, sha, paths, authors)));
+		}
+		return commits;
+	}
+
+	@Benchmark
+	public List<Commit> packedResponses() throws IOException {
+		SymbolTable paths = new SymbolTable();
+		SymbolTable authors = new SymbolTable();
+		List<Commit> commits = new ArrayList<>(this.shas.size());
+		for (String sha : this.shas)
+			commits.add(RestHelper.decode(this.cache.open(GitHelper.KEY_COMMIT_INFO + sha), reader -> CommitDecoder.decode(reader, sha, paths, authors)));
+		return commits;
+	}
+
+	@Benchmark
+	public List<Commit> packedRecords() throws IOException {
+		SymbolTable paths = new SymbolTable();
+		SymbolTable authors = new SymbolTable();
+		List<Commit> commits = new ArrayList<>(this.shas.size());
+		for (String sha : this.shas)
+			commits.add(CommitRecords.decode(this.cache.open(GitHelper.KEY_COMMIT_RECORD + sha), sha, paths, authors));
+		return commits;
+	}
+
+}
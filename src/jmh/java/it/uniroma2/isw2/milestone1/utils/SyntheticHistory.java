@@ -0,0 +1,292 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+
+/*
+ * Genera la storia sintetica di un progetto (versioni, bug e commit) e la scrive direttamente nelle cache lette
+ * da JiraHelper (.cache/jira/<progetto>) e GitHelper (.cache/packed/<progetto>.pack), così che DatasetBuilder
+ * la elabori come un progetto reale, senza accessi alla rete (milestone1.jira.offline=true).
+ * - le release sono equidistanti, una ogni releaseCadenceDays giorni; i commit sono distribuiti uniformemente su tutte le release
+ * - ogni commit tocca in media filesPerCommit file java, scelti tra quelli già creati (il numero cresce fino a files)
+ * - ogni bug è citato nel messaggio di un commit precedente all'ultima release; FV è la prima release successiva al fix
+ * A parità di parametri e seed la storia generata è identica. Le cache di un progetto vengono sostituite per intero:
+ * per non toccare quelle dei progetti reali il nome deve iniziare con PROJECT_PREFIX.
+ */
+public class SyntheticHistory {
+
+	private static final Logger LOGGER = Logger.getLogger(SyntheticHistory.class.getName());
+
+	public static final String PROJECT_PREFIX = "SYNTH"; // prefisso obbligatorio dei progetti sintetici
+
+	private static final LocalDateTime START = LocalDate.of(2010, 1, 1).atStartOfDay();
+	private static final int PAGE_SIZE = 100; // commit per pagina della lista, come per le API di Github
+	private static final int MAX_CHANGED_LINES = 200;
+	private static final int PACKAGES = 50;
+	private static final String PATH_FORMAT = "src/main/java/org/synthetic/p%d/File%d.java";
+	private static final String AUTHOR_FORMAT = "Author %d";
+	private static final String VERSION_FORMAT = "1.%d.0";
+	private static final DateTimeFormatter JIRA_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ", Locale.ROOT);
+	private static final String DIGEST_ALGORITHM = "SHA-1";
+
+	private final String projectName;
+	private final int commits;
+	private int versions;
+	private int releaseCadenceDays;
+	private int files;
+	private int filesPerCommit;
+	private int authors;
+	private int bugs;
+	private long seed;
+
+	/* Parametri di default proporzionali al numero di commit */
+	public SyntheticHistory(String projectName, int commits) {
+		if (!projectName.startsWith(PROJECT_PREFIX))
+			throw new IllegalArgumentException(String.format("Nome di progetto sintetico non valido: %s (deve iniziare con %s)", projectName, PROJECT_PREFIX));
+		this.projectName = projectName;
+		this.commits = Math.max(1, commits);
+		this.versions = 20;
+		this.releaseCadenceDays = 90;
+		this.files = Math.max(10, commits / 4);
+		this.filesPerCommit = 4;
+		this.authors = Math.max(1, commits / 200);
+		this.bugs = Math.max(1, commits / 10);
+		this.seed = 42;
+	}
+
+	public void setVersions(int versions) {
+		this.versions = Math.max(2, versions);
+	}
+
+	public void setReleaseCadenceDays(int releaseCadenceDays) {
+		this.releaseCadenceDays = Math.max(1, releaseCadenceDays);
+	}
+
+	public void setFiles(int files) {
+		this.files = Math.max(1, files);
+	}
+
+	public void setFilesPerCommit(int filesPerCommit) {
+		this.filesPerCommit = Math.max(1, filesPerCommit);
+	}
+
+	public void setAuthors(int authors) {
+		this.authors = Math.max(1, authors);
+	}
+
+	public void setBugs(int bugs) {
+		this.bugs = Math.max(0, bugs);
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public String getProjectName() {
+		return projectName;
+	}
+
+	public int getCommits() {
+		return commits;
+	}
+
+	/* Sostituisce le cache del progetto con la storia generata */
+	public void write() throws IOException {
+		Random random = new Random(this.seed);
+		List<LocalDate> releases = new ArrayList<>();
+		for (int i = 0; i < this.versions; i++)
+			releases.add(START.toLocalDate().plusDays((i + 1L) * this.releaseCadenceDays));
+
+		Map<Integer, List<Integer>> fixes = new HashMap<>(); // commit -> chiavi dei bug citati
+		List<JsonObject> issues = new ArrayList<>();
+		int fixableCommits = Math.max(1, commitsBefore(releases.get(this.versions - 1).atStartOfDay()));
+		for (int key = 1; key <= this.bugs; key++) {
+			int fix = random.nextInt(fixableCommits);
+			fixes.computeIfAbsent(fix, k -> new ArrayList<>()).add(key);
+			issues.add(issue(key, dateOf(fix), releases, random));
+		}
+
+		writeJira(releases, issues);
+		writeGithub(fixes, random);
+		LOGGER.log(Level.INFO, "Generata la storia sintetica di {0}: {1} versioni, {2} bug, {3} commit",
+				new Object[] { this.projectName, this.versions, this.bugs, this.commits });
+	}
+
+	private long spanSeconds() {
+		return (long) this.versions * this.releaseCadenceDays * 24 * 3600;
+	}
+
+	private LocalDateTime dateOf(int commit) {
+		return START.plusSeconds(spanSeconds() * commit / this.commits);
+	}
+
+	/* Numero di commit precedenti alla data (indice del primo commit non precedente) */
+	private int commitsBefore(LocalDateTime date) {
+		long seconds = date.toEpochSecond(ZoneOffset.UTC) - START.toEpochSecond(ZoneOffset.UTC);
+		return (int) Math.min(this.commits, (seconds * this.commits + spanSeconds() - 1) / spanSeconds());
+	}
+
+	private JsonObject issue(int key, LocalDateTime fixDate, List<LocalDate> releases, Random random) {
+		int fv = 0;
+		while (!releases.get(fv).atStartOfDay().isAfter(fixDate))
+			fv++;
+
+		LocalDateTime created = fixDate.minusDays(random.nextInt(3 * this.releaseCadenceDays + 1));
+		if (created.isBefore(START))
+			created = START;
+		int ov = 0;
+		while (!releases.get(ov).atStartOfDay().isAfter(created))
+			ov++;
+
+		JsonObject fields = new JsonObject();
+		JsonArray fixVersions = new JsonArray();
+		fixVersions.add(version(fv, releases));
+		fields.add("fixVersions", fixVersions);
+		fields.addProperty("created", JIRA_DATE.format(created.atOffset(ZoneOffset.UTC)));
+		JsonArray affectedVersions = new JsonArray();
+		if (random.nextBoolean())
+			affectedVersions.add(version(random.nextInt(ov + 1), releases));
+		fields.add("versions", affectedVersions);
+
+		JsonObject issue = new JsonObject();
+		issue.addProperty("key", this.projectName + "-" + key);
+		issue.add("fields", fields);
+		return issue;
+	}
+
+	private static JsonObject version(int index, List<LocalDate> releases) {
+		JsonObject version = new JsonObject();
+		version.addProperty("name", String.format(VERSION_FORMAT, index));
+		version.addProperty("releaseDate", releases.get(index).toString());
+		return version;
+	}
+
+	/* Stesse chiavi e url delle richieste di JiraHelper, pagine di MAX_RESULTS issue */
+	private void writeJira(List<LocalDate> releases, List<JsonObject> issues) throws IOException {
+		JiraCache cache = new JiraCache(this.projectName);
+		JiraHelper helper = new JiraHelper(this.projectName, cache);
+		cache.clear();
+
+		JsonArray jsonVersions = new JsonArray();
+		for (int i = 0; i < releases.size(); i++)
+			jsonVersions.add(version(i, releases));
+		JsonObject project = new JsonObject();
+		project.add("versions", jsonVersions);
+		cache.put(JiraHelper.KEY_PROJECT, helper.getProjectURL(), project.toString(), null, null);
+
+		int startAt = 0;
+		do {
+			JsonArray page = new JsonArray();
+			for (int i = startAt; i < Math.min(issues.size(), startAt + JiraHelper.MAX_RESULTS); i++)
+				page.add(issues.get(i));
+
+			JsonObject search = new JsonObject();
+			search.addProperty("startAt", startAt);
+			search.addProperty("maxResults", JiraHelper.MAX_RESULTS);
+			search.addProperty("total", issues.size());
+			search.add("issues", page);
+			cache.put(JiraHelper.KEY_SEARCH + startAt, helper.getBugsURL(startAt, JiraHelper.MAX_RESULTS), search.toString(), null, null);
+			startAt += JiraHelper.MAX_RESULTS;
+		} while (startAt < issues.size());
+	}
+
+	/* Record ridotti dei commit e pagine della lista (dal più recente), chiusa da una pagina vuota */
+	private void writeGithub(Map<Integer, List<Integer>> fixes, Random random) throws IOException {
+		Path packPath = Paths.get(String.format(GitHelper.CACHE_PACK, this.projectName.toLowerCase(Locale.ROOT)));
+		Files.createDirectories(packPath.getParent());
+		Files.deleteIfExists(packPath);
+
+		SymbolTable paths = new SymbolTable();
+		SymbolTable authorNames = new SymbolTable();
+		try (PackedCache cache = new PackedCache(packPath)) {
+			for (int i = 0; i < this.commits; i++) {
+				Commit c = commit(i, fixes.get(i), random, paths, authorNames);
+				cache.put(GitHelper.KEY_COMMIT_RECORD + c.getSha(), CommitRecords.encode(c, paths, authorNames));
+			}
+
+			int pages = (this.commits + PAGE_SIZE - 1) / PAGE_SIZE;
+			for (int page = 1; page <= pages + 1; page++) {
+				JsonArray entries = new JsonArray();
+				int newest = this.commits - 1 - (page - 1) * PAGE_SIZE;
+				for (int i = newest; i > newest - PAGE_SIZE && i >= 0; i--)
+					entries.add(listEntry(i));
+				cache.put(GitHelper.KEY_COMMIT_PAGE + page, entries.toString());
+			}
+		}
+	}
+
+	private Commit commit(int index, List<Integer> fixedBugs, Random random, SymbolTable paths, SymbolTable authorNames) {
+		Commit c = new Commit();
+		c.setSha(sha(index));
+		c.setDate(dateOf(index));
+		c.setAuthorId(authorNames.intern(String.format(AUTHOR_FORMAT, random.nextInt(this.authors))));
+
+		StringBuilder message = new StringBuilder();
+		if (fixedBugs != null)
+			for (int key : fixedBugs)
+				message.append(this.projectName).append('-').append(key).append(": ");
+		c.setMessage(message.append("synthetic change ").append(index).toString());
+
+		/* I file vengono creati progressivamente: a metà storia ne esiste circa la metà */
+		int available = (int) Math.max(1, (long) this.files * (index + 1) / this.commits);
+		int touched = Math.min(available, 1 + random.nextInt(2 * this.filesPerCommit - 1));
+		List<Integer> chosen = new ArrayList<>(touched);
+		while (chosen.size() < touched) {
+			int file = random.nextInt(available);
+			if (!chosen.contains(file))
+				chosen.add(file);
+		}
+		for (int file : chosen) {
+			int additions = 1 + random.nextInt(MAX_CHANGED_LINES);
+			CommitDecoder.addJavaDiff(c, String.format(PATH_FORMAT, file % PACKAGES, file), additions, random.nextInt(additions + 1), paths);
+		}
+		CommitDecoder.completeFileIds(c);
+		return c;
+	}
+
+	private JsonObject listEntry(int index) {
+		JsonObject author = new JsonObject();
+		author.addProperty("date", DateTimeFormatter.ISO_INSTANT.format(dateOf(index).toInstant(ZoneOffset.UTC)));
+		JsonObject commit = new JsonObject();
+		commit.add("author", author);
+		JsonObject entry = new JsonObject();
+		entry.addProperty("sha", sha(index));
+		entry.add("commit", commit);
+		return entry;
+	}
+
+	private String sha(int index) {
+		try {
+			byte[] hash = MessageDigest.getInstance(DIGEST_ALGORITHM).digest((this.projectName + ":" + index).getBytes(StandardCharsets.UTF_8));
+			StringBuilder sha = new StringBuilder(hash.length * 2);
+			for (byte b : hash)
+				sha.append(String.format("%02x", b));
+			return sha.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,13 @@
+package it.uniroma2.isw2.milestone1;
+
+/* Fasi di DatasetBuilder.build, nell'ordine di esecuzione */
+public enum BuildStage {
+
+	VERSIONS, // recupero delle versioni da JIRA
+	BUGS, // recupero dei bug da JIRA
+	PROPORTION, // stima delle IV mancanti
+	REPLAY, // recupero dei commit in streaming, sovrapposto al collegamento dei bug e al replay delle release
+	LINKING, // insieme dei file buggy di ciascuna versione, noto soltanto a storia completa
+	OUTPUT // etichettatura delle righe con la Buggyness e scrittura dei file del dataset
+
+}
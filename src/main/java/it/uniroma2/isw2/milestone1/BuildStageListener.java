@@ -0,0 +1,10 @@
+package it.uniroma2.isw2.milestone1;
+
+/* Notificato dal thread che costruisce il dataset all'inizio e alla fine di ogni fase (non in caso di errore) */
+public interface BuildStageListener {
+
+	void stageStarted(String projectName, BuildStage stage);
+
+	void stageCompleted(String projectName, BuildStage stage);
+
+}
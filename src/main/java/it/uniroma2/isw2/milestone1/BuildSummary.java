@@ -0,0 +1,100 @@
+package it.uniroma2.isw2.milestone1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/* Riepilogo delle costruzioni dei dataset di più progetti, riempito in modo concorrente */
+public class BuildSummary {
+
+	private static final Logger LOGGER = Logger.getLogger(BuildSummary.class.getName());
+
+	private static final String CSV_HEADER = "Project,Status,Versions,Bugs,Commits,Rows,Seconds,Error";
+	private static final String STATUS_OK = "OK";
+	private static final String STATUS_FAILED = "FAILED";
+
+	public static class Entry {
+
+		private final String project;
+		private final String error;
+		private final int versions;
+		private final int bugs;
+		private final int commits;
+		private final long rows;
+		private final long millis;
+
+		/* error: null se la costruzione è terminata correttamente */
+		public Entry(String project, DatasetBuilder builder, long millis, String error) {
+			this.project = project;
+			this.error = error;
+			this.versions = (builder == null) ? 0 : builder.getVersionsCount();
+			this.bugs = (builder == null) ? 0 : builder.getBugsCount();
+			this.commits = (builder == null) ? 0 : builder.getCommitsCount();
+			this.rows = (builder == null) ? 0 : builder.getRows();
+			this.millis = millis;
+		}
+
+		public boolean isSuccessful() {
+			return this.error == null;
+		}
+
+		private String toCsv() {
+			return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%.1f,%s", this.project, isSuccessful() ? STATUS_OK : STATUS_FAILED,
+					this.versions, this.bugs, this.commits, this.rows, this.millis / 1000.0,
+					isSuccessful() ? "" : '"' + this.error.replace("\"", "\"\"") + '"');
+		}
+
+	}
+
+	private final List<String> projects;
+	private final List<Entry> entries;
+
+	/* projects: ordine con cui i progetti compaiono nel riepilogo */
+	public BuildSummary(List<String> projects) {
+		this.projects = new ArrayList<>(projects);
+		this.entries = new ArrayList<>();
+	}
+
+	public synchronized void add(Entry entry) {
+		this.entries.add(entry);
+	}
+
+	public synchronized boolean isSuccessful() {
+		return this.entries.size() == this.projects.size() && this.entries.stream().allMatch(Entry::isSuccessful);
+	}
+
+	private synchronized List<Entry> sortedEntries() {
+		List<Entry> sorted = new ArrayList<>(this.entries);
+		sorted.sort(Comparator.comparingInt(e -> this.projects.indexOf(e.project)));
+		return sorted;
+	}
+
+	public void log() {
+		for (Entry e : sortedEntries()) {
+			if (e.isSuccessful())
+				LOGGER.log(Level.INFO, "{0}: {1} versioni, {2} bug, {3} commit, {4} righe in {5} s",
+						new Object[] { e.project, e.versions, e.bugs, e.commits, e.rows, e.millis / 1000.0 });
+			else
+				LOGGER.log(Level.SEVERE, "{0}: costruzione fallita dopo {1} s ({2})", new Object[] { e.project, e.millis / 1000.0, e.error });
+		}
+	}
+
+	public void write(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+			writer.write(CSV_HEADER);
+			writer.newLine();
+			for (Entry e : sortedEntries()) {
+				writer.write(e.toCsv());
+				writer.newLine();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package it.uniroma2.isw2.milestone1;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import it.uniroma2.isw2.milestone1.utils.CacheMigrator;
+
+/*
+ * Converte nel formato ridotto le cache di Github dei progetti indicati come argomenti
+ * (senza argomenti, tutte le cache in .cache/packed), ad esempio:
+ * java it.uniroma2.isw2.milestone1.CacheMigration BOOKKEEPER SYNCOPE
+ */
+public class CacheMigration {
+
+	private static final Logger LOGGER = Logger.getLogger(CacheMigration.class.getName());
+
+	private static final String PACKED_FOLDER = ".cache/packed";
+	private static final String PACK_EXTENSION = ".pack";
+
+	public static void main(String[] args) {
+
+		try {
+			List<Path> packs = new ArrayList<>();
+			if (args.length > 0) {
+				for (String project : args)
+					packs.add(Paths.get(PACKED_FOLDER, project.toLowerCase(Locale.ROOT) + PACK_EXTENSION));
+			} else {
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(PACKED_FOLDER), "*" + PACK_EXTENSION)) {
+					stream.forEach(packs::add);
+				}
+			}
+
+			for (Path pack : packs) {
+				if (!Files.exists(pack)) {
+					LOGGER.log(Level.WARNING, "Cache non trovata: {0}", pack);
+					continue;
+				}
+				if (CacheMigrator.migrate(pack) == 0)
+					LOGGER.log(Level.INFO, "Cache {0} già nel formato ridotto", pack);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, String.format("Errore nella migrazione della cache: %s", e.getMessage()));
+		}
+
+	}
+
+}
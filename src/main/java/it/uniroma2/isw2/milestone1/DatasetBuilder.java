@@ -1,16 +1,23 @@
 package it.uniroma2.isw2.milestone1;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import it.uniroma2.isw2.milestone1.entities.AnalyzedFile;
 import it.uniroma2.isw2.milestone1.entities.Bug;
@@ -21,165 +28,484 @@ import it.uniroma2.isw2.milestone1.entities.Version;
 import it.uniroma2.isw2.milestone1.exceptions.GithubOwnerException;
 import it.uniroma2.isw2.milestone1.exceptions.GithubTokenException;
 import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
-import it.uniroma2.isw2.milestone1.utils.GitHelper;
+import it.uniroma2.isw2.milestone1.utils.BugKeyIndex;
+import it.uniroma2.isw2.milestone1.utils.BuggyFilesIndex;
+import it.uniroma2.isw2.milestone1.utils.ColumnarDataset;
+import it.uniroma2.isw2.milestone1.utils.CommitSource;
+import it.uniroma2.isw2.milestone1.utils.CommitStream;
+import it.uniroma2.isw2.milestone1.utils.DatasetWriter;
 import it.uniroma2.isw2.milestone1.utils.JiraHelper;
+import it.uniroma2.isw2.milestone1.utils.PipelineMetrics;
+import it.uniroma2.isw2.milestone1.utils.ProportionEngine;
+import it.uniroma2.isw2.milestone1.utils.ReplayCheckpoint;
+import it.uniroma2.isw2.milestone1.utils.RowSpill;
+import it.uniroma2.isw2.milestone1.utils.Settings;
+import it.uniroma2.isw2.milestone1.utils.SymbolTable;
 
 public class DatasetBuilder {
 
 	private static final Logger LOGGER = Logger.getLogger(DatasetBuilder.class.getName()); 
 	
 	private static final String OUTPUT_FILE_NAME_FORMAT = "%s%s_metrics.%s";
+	private static final String WALK_FORWARD_FILE_NAME_FORMAT = "%s%s_walkforward_%d.%s"; // dataset delle prime n release (cutoff n)
+	private static final String WALK_FORWARD_ALL = "all"; // un cutoff per ogni release della prima metà
+	private static final String STREAM_THREAD_FORMAT = "commits-%s"; // thread che recupera i commit del progetto
+	private static final String PROJECT_LABEL = "project"; // etichetta del progetto nelle metriche
 	
 	private String projectName;
 	private String outputsFolder;
 	
-	private GitHelper gitHelper;
+	private CommitSource commitSource;
 	private JiraHelper jiraHelper;
 	
 	private List<Version> versions;
-	private List<Commit> commits;
 	private List<Bug> bugs;
-	private Map<String, AnalyzedFile> files;
+	private Map<String, List<Bug>> bugsByKey; // chiave JIRA -> bug, per il collegamento dei commit
+	private int commitsCount; // commit ricevuti dallo stream
+	private List<AnalyzedFile> files; // file nell'ordine in cui compaiono nei commit
+	private AnalyzedFile[] filesById; // stessi file, indicizzati per id del percorso
+	private RowSpill rowSpill; // righe calcolate, in ordine di release, in attesa della Buggyness
+	private BuggyFilesIndex buggyFiles;
+	private DatasetWriter datasetWriter;
+	private List<Integer> cutoffs; // cutoff del walk-forward, in ordine crescente
+	private List<BuggyFilesIndex> cutoffBuggyFiles; // file buggy secondo i bug noti a ciascun cutoff
+	
+	/* Posizione del replay: release corrente, data dell'ultimo commit applicato e impronta dei commit ricevuti */
+	private int versionsIdx;
+	private LocalDateTime lastCommitDate;
+	private ReplayCheckpoint.CommitsDigest commitsDigest;
+	private ReplayCheckpoint checkpoint;
+	private ReplayCheckpoint.Snapshot snapshot;
+	
+	private BuildStageListener stageListener; // null: nessuna notifica delle fasi
+	private long stageStart; // istante di inizio della fase corrente, in nanosecondi
+	
+	/* Dizionari di progetto: percorsi dei file e autori dei commit */
+	private SymbolTable paths;
+	private SymbolTable authors;
 	
 	public DatasetBuilder(String projectName, String outputsFolder) throws GithubTokenException, GithubOwnerException {
+		this(projectName, outputsFolder, new SymbolTable(), new SymbolTable());
+		this.commitSource = CommitSource.forProject(this.projectName, this.paths, this.authors);
+		this.jiraHelper = new JiraHelper(this.projectName);
+	}
+	
+	/* Sorgenti già pronte (benchmark e dati sintetici): commitSource deve usare gli stessi dizionari paths e authors */
+	DatasetBuilder(String projectName, String outputsFolder, SymbolTable paths, SymbolTable authors, CommitSource commitSource, JiraHelper jiraHelper) {
+		this(projectName, outputsFolder, paths, authors);
+		this.commitSource = commitSource;
+		this.jiraHelper = jiraHelper;
+	}
+	
+	private DatasetBuilder(String projectName, String outputsFolder, SymbolTable paths, SymbolTable authors) {
 		this.projectName = projectName;
 		this.outputsFolder = outputsFolder;
-		this.gitHelper = new GitHelper(this.projectName);
-		this.jiraHelper = new JiraHelper(this.projectName);
+		this.paths = paths;
+		this.authors = authors;
+	}
+
+	/* Pool condiviso per il recupero dei commit quando più progetti vengono costruiti insieme */
+	public void setFetchExecutor(ExecutorService executor) {
+		this.commitSource.setExecutor(executor);
+	}
+	
+	public void setStageListener(BuildStageListener stageListener) {
+		this.stageListener = stageListener;
+	}
+	
+	public int getVersionsCount() {
+		return (this.versions == null) ? 0 : this.versions.size();
+	}
+	
+	public int getBugsCount() {
+		return (this.bugs == null) ? 0 : this.bugs.size();
+	}
+	
+	public int getCommitsCount() {
+		return this.commitsCount;
+	}
+	
+	public long getRows() {
+		return (this.datasetWriter == null) ? 0 : this.datasetWriter.getRows();
 	}
 
 	public void build() throws IOException, RateLimitExceededGithubAPIException {
 		
+		/* Lettura dell'ultimo checkpoint: i dizionari vanno popolati prima di decodificare i commit */
+		if (Settings.checkpointEnabled()) {
+			this.checkpoint = new ReplayCheckpoint(Paths.get(Settings.checkpointFolder(), this.projectName), this.projectName);
+			this.snapshot = this.checkpoint.load(this.paths, this.authors);
+		}
+		
+		int targetId = this.prepare();
+		this.cutoffs = this.walkForwardCutoffs(targetId);
+		int replayTarget = this.cutoffs.isEmpty() ? targetId : Math.max(targetId, this.cutoffs.get(this.cutoffs.size()-1));
+		
+		/*
+		 * I commit arrivano in streaming dalla sorgente: ciascuno viene collegato ai bug citati e applicato al replay
+		 * mentre il recupero dei successivi prosegue, senza conservare l'intera storia
+		 */
+		LOGGER.log(Level.INFO, "Recupero commit del progetto ({0}) e replay delle release", Settings.commitSource());
+		this.startStage(BuildStage.REPLAY);
+		try (RowSpill spill = new RowSpill(this.projectName)) {
+			this.rowSpill = spill;
+			try {
+				if (!this.replayStream(targetId, replayTarget, this.canResume(replayTarget))) {
+					LOGGER.log(Level.INFO, "Commit diversi da quelli del checkpoint, replay dal primo commit");
+					this.checkpoint.start(null);
+					this.restartReplay();
+					this.replayStream(targetId, replayTarget, false);
+				}
+			} finally {
+				if (this.checkpoint != null)
+					this.checkpoint.close();
+			}
+			this.completeStage(BuildStage.REPLAY);
+			LOGGER.log(Level.INFO, "Trovati {0} commit", this.commitsCount);
+
+			/* I file buggy di una release dipendono dai commit di fix successivi: sono noti solo a storia completa */
+			LOGGER.log(Level.INFO, "Costruzione dell''insieme dei file buggy di ciascuna versione");
+			this.startStage(BuildStage.LINKING);
+			this.buggyFiles = new BuggyFilesIndex(this.bugs, this.versions);
+			this.cutoffBuggyFiles = new ArrayList<>();
+			for (int cutoff : this.cutoffs)
+				this.cutoffBuggyFiles.add(this.buggyFilesAtCutoff(cutoff));
+			this.completeStage(BuildStage.LINKING);
+
+			/* Scrittura del dataset: le righe di ogni release vengono rilette, etichettate e scritte nei file csv e arff */
+			LOGGER.log(Level.INFO, "Creazione dei file csv e arff");
+			this.startStage(BuildStage.OUTPUT);
+			try (DatasetWriter writer = this.openDatasetWriter(); RowSpill.Reader reader = spill.reader(this.versions, this.paths)) {
+				this.datasetWriter = writer;
+				for (int i = 0; i < targetId; i++)
+					writer.writeRelease(this.label(reader.nextRelease(i), this.buggyFiles));
+			}
+			this.writeWalkForward();
+			this.completeStage(BuildStage.OUTPUT);
+		} finally {
+			this.rowSpill = null;
+		}
+		PipelineMetrics.getInstance().add(PipelineMetrics.DATASET_ROWS, this.datasetWriter.getRows(), PROJECT_LABEL, this.projectName);
+		LOGGER.log(Level.INFO, "Dataset di {0} creato correttamente ({1} righe)", new Object[] { this.projectName, this.datasetWriter.getRows() });
+
+	}
+	
+	/* Recupero di versioni e bug e stima delle IV mancanti; restituisce l'indice della release target */
+	int prepare() throws IOException, RateLimitExceededGithubAPIException {
+		
 		/* Recupero delle versioni del progetto da JIRA */		
 		LOGGER.log(Level.INFO, "Recupero versioni del progetto da JIRA");
+		this.startStage(BuildStage.VERSIONS);
 		this.versions = jiraHelper.retrieveVersions();
+		this.completeStage(BuildStage.VERSIONS);
 		LOGGER.log(Level.INFO, "Trovate {0} versioni", this.versions.size());
 					
 		/* Recupero i bug del progetto da JIRA */
 		LOGGER.log(Level.INFO, "Recupero i bug del progetto da JIRA");
+		this.startStage(BuildStage.BUGS);
 		this.bugs = jiraHelper.retrieveBugs(this.versions);
+		this.bugsByKey = new HashMap<>();
+		for (Bug b : this.bugs)
+			this.bugsByKey.computeIfAbsent(b.getKey(), k -> new ArrayList<>()).add(b);
+		this.completeStage(BuildStage.BUGS);
 		LOGGER.log(Level.INFO, "Trovati {0} bug", this.bugs.size());
 		
-		/* Scarto del 50% delle versioni */
-		int targetId = (int)Math.ceil(this.versions.size()/2.0);
-
-		/* Recupero i commit del progetto da Github */
-		LOGGER.log(Level.INFO, "Recupero commit del progetto da Github");
-		this.commits = gitHelper.retrieveCommits(maxDate(this.bugs.get(this.bugs.size()-1).getFv().getReleaseDate(), this.versions.get(targetId).getReleaseDate()));
-		LOGGER.log(Level.INFO, "Trovati {0} commit", this.commits.size());
-
-		this.files = new HashMap<>();
-		
-		/* Applicazione di proportion per il calcolo dell'IV quando mancante */
+		/* Applicazione di proportion per il calcolo dell'IV quando mancante: non dipende dai commit */
 		LOGGER.log(Level.INFO, "Applicazione di Proportion per il calcolo delle IV mancanti");
+		this.startStage(BuildStage.PROPORTION);
 		this.proportion();
+		this.completeStage(BuildStage.PROPORTION);
 		
-		/* Costruzione dell'insieme dei file toccati da ciascun bug */
-		LOGGER.log(Level.INFO, "Costruzione dell''insieme dei file toccati da ciascun bug");
-		this.setInfectedFiles();
-		
+		/* Scarto del 50% delle versioni */
+		int targetId = (int)Math.ceil(this.versions.size()/2.0);
 		LOGGER.log(Level.INFO, "Considera soltanto la prima metà delle versioni ({0})", targetId);
+		this.resetReplay();
+		return targetId;
+	}
 		
-		/* Creazione del dataset */
-		LOGGER.log(Level.INFO, "Creazione del dataset");
-		this.createDataset(targetId);
-		LOGGER.log(Level.INFO, "Dataset creato correttamente");
-
-		LOGGER.log(Level.INFO, "Creazione dei file csv e arff");
-		this.createOutputFile();
-		LOGGER.log(Level.INFO, "File csv e arff creati correttamente");
-
+	/* I commit servono fino alla release target per il replay e fino all'ultima FV per il collegamento dei bug */
+	private CommitStream openCommitStream(int targetVersionIdx) {
+		LocalDateTime targetDate = maxDate(this.bugs.get(this.bugs.size()-1).getFv().getReleaseDate(), this.versions.get(targetVersionIdx).getReleaseDate());
+		return new CommitStream(this.commitSource, targetDate, Settings.streamCapacity(), String.format(STREAM_THREAD_FORMAT, this.projectName));
 	}
 	
-	private void proportion() {
-		for (Bug b : bugs) {
-			if (b.getIv() == null) { // Se IV mancante, allora lo setto
-				b.setIv(this.bugs, this.versions);
-			}
-		}
+	private void startStage(BuildStage stage) {
+		if (this.stageListener != null)
+			this.stageListener.stageStarted(this.projectName, stage);
+		this.stageStart = System.nanoTime();
+	}
+	
+	private void completeStage(BuildStage stage) {
+		PipelineMetrics.getInstance().observeNanos(PipelineMetrics.STAGE_DURATION, System.nanoTime() - this.stageStart,
+				PROJECT_LABEL, this.projectName, "stage", stage.name().toLowerCase(Locale.ROOT));
+		if (this.stageListener != null)
+			this.stageListener.stageCompleted(this.projectName, stage);
+	}
+	
+	/* Nessun file analizzato: il replay riparte dal primo commit */
+	void resetReplay() {
+		this.files = new ArrayList<>();
+		this.filesById = new AnalyzedFile[this.paths.size()];
+		this.lastCommitDate = null;
 	}
 	
-	private void setInfectedFiles() {
-		for (Bug b : this.bugs) {
-			for (Commit c : commits) {
-				if (c.getMessage().contains(b.getKey())) {
-					for (Diff d : c.getDiffs()) {
-						b.addInfectedFile(d.getFilename());
-					}
+	/* Nuovo replay dopo uno stream abbandonato: anche i collegamenti dei bug vengono ricostruiti dal primo commit */
+	private void restartReplay() {
+		for (Bug b : this.bugs)
+			b.clearInfectedFiles();
+		this.resetReplay();
+	}
+	
+	List<AnalyzedFile> getFiles() {
+		return this.files;
+	}
+	
+	void proportion() {
+		new ProportionEngine(this.versions, Settings.proportionWindow()).apply(this.bugs);
+	}
+	
+	/* Costruzione dell'insieme dei file toccati da ciascun bug: il commit viene collegato ai bug citati nel messaggio */
+	void linkBugs(Commit c) {
+		for (String key : BugKeyIndex.extractKeys(c.getMessage())) {
+			for (Bug b : this.bugsByKey.getOrDefault(key, Collections.emptyList())) {
+				for (Diff d : c.getDiffs()) {
+					b.addInfectedFile(d.getFileId(), c.getDate());
 				}
 			}
 		}
 	}
 	
-	private void createDataset(int targetVersionIdx) {
-		int versionsIdx = 0;
-		int commitsIdx = 0;
-		while (versionsIdx < targetVersionIdx) {			
-			if (this.needSwitchVersion(versionsIdx, commitsIdx)) {
-				LOGGER.log(Level.INFO, "Dopo {0} commit passo dalla versione {1} alla {2}", new Object[] { commitsIdx, this.versions.get(versionsIdx), this.versions.get(versionsIdx+1) });
-				this.evalStatistics(commitsIdx, versionsIdx++);
-			}
-			this.applyDiff(commitsIdx++);
+	/* Un passaggio completo su un nuovo stream dei commit; false se il checkpoint non corrisponde ai commit ricevuti */
+	private boolean replayStream(int targetId, int targetVersionIdx, boolean resume) throws IOException, RateLimitExceededGithubAPIException {
+		try (CommitStream stream = this.openCommitStream(targetVersionIdx)) {
+			stream.start();
+			return this.createDataset(targetId, targetVersionIdx, stream, resume);
 		}
 	}
 	
-	private boolean needSwitchVersion(int versionsIdx, int commitsIdx) {
-		return this.commits.get(commitsIdx).getDate().isAfter(this.versions.get(versionsIdx+1).getReleaseDate());
+	/*
+	 * Consuma tutto lo stream: ogni commit riceve la sua posizione nella storia come id e viene collegato ai bug;
+	 * fino alla release targetVersionIdx (target o ultimo cutoff del walk-forward) viene anche applicato al replay,
+	 * calcolando le righe ad ogni cambio di release.
+	 * Con resume i commit già attraversati dal checkpoint entrano soltanto nell'impronta, senza essere conservati: all'ultimo
+	 * il replay riparte dal checkpoint se l'impronta coincide, altrimenti (anche con una storia più corta) restituisce false
+	 * senza consumare il resto dello stream e il replay va ripetuto dal primo commit su un nuovo stream
+	 */
+	private boolean createDataset(int targetId, int targetVersionIdx, CommitStream stream, boolean resume) throws IOException, RateLimitExceededGithubAPIException {
+		this.versionsIdx = 0;
+		this.commitsCount = 0;
+		this.commitsDigest = new ReplayCheckpoint.CommitsDigest();
+		int resumeIdx = resume ? this.snapshot.getCommitsIdx() : -1;
+
+		Commit c;
+		while ((c = stream.next()) != null) {
+			c.setId(this.commitsCount++);
+			this.commitsDigest.add(c);
+			this.linkBugs(c);
+
+			if (c.getId() == resumeIdx) {
+				if (!this.resumeFromCheckpoint(c, targetVersionIdx))
+					return false;
+			} else if (c.getId() > resumeIdx && this.versionsIdx < targetVersionIdx) {
+				this.replay(c);
+			}
+		}
+
+		if (this.commitsCount <= resumeIdx) // storia più corta di quella del checkpoint
+			return false;
+
+		/*
+		 * Una storia che termina prima della release target è incompleta. Le release successive, richieste solo dai cutoff
+		 * del walk-forward, possono restare aperte a fine storia: comprendono già tutti i commit fino alla data target
+		 */
+		if (this.versionsIdx < targetId)
+			throw new IOException(String.format("I commit di %s terminano prima della release %s", this.projectName, this.versions.get(targetId)));
+		while (this.versionsIdx < targetVersionIdx)
+			this.evalStatistics(this.versionsIdx++);
+		return true;
 	}
 	
-	private void evalStatistics(int commitsIdx, int versionIdx) {
+	/* Un passo del replay: cambio di release se il commit è successivo alla prossima release, poi applicazione del commit */
+	private void replay(Commit c) throws IOException {
+		if (this.needSwitchVersion(this.versionsIdx, c)) {
+			LOGGER.log(Level.INFO, "Dopo {0} commit passo dalla versione {1} alla {2}", new Object[] { c.getId(), this.versions.get(this.versionsIdx), this.versions.get(this.versionsIdx+1) });
+			this.evalStatistics(this.versionsIdx++);
+			this.saveCheckpoint(c.getId());
+		}
+		this.applyDiff(c);
+	}
+
+	/* Il checkpoint è utilizzabile se le versioni già attraversate non sono cambiate; i commit si verificano man mano che arrivano */
+	private boolean canResume(int targetVersionIdx) throws IOException {
+		if (this.checkpoint == null)
+			return false;
+		
+		if (this.snapshot == null || !this.checkpoint.matches(this.snapshot, this.versions, targetVersionIdx)) {
+			LOGGER.log(Level.INFO, "Nessun checkpoint valido, replay dal primo commit");
+			this.checkpoint.start(null);
+			return false;
+		}
+		return true;
+	}
 		
-		LocalDateTime date = (commitsIdx > 0) ? commits.get(commitsIdx-1).getDate() : null;
+	/*
+	 * Ripristina file e posizione del replay dall'ultimo checkpoint e le righe già calcolate, se i commit ricevuti fino a last
+	 * (il commit del checkpoint) coincidono con quelli già applicati; false altrimenti, senza modificare lo stato
+	 */
+	private boolean resumeFromCheckpoint(Commit last, int targetVersionIdx) throws IOException {
+		if (!this.checkpoint.matchesCommits(this.snapshot, this.commitsDigest))
+			return false;
 
-		for (AnalyzedFile f : this.files.values()) 
-			f.computeMetrics(this.versions.get(versionIdx), date, this.bugs);
+		for (AnalyzedFile f : this.snapshot.getFiles())
+			this.addFile(f);
+		this.checkpoint.copyRows(this.snapshot, this.rowSpill);
+		this.checkpoint.start(this.snapshot);
+		
+		this.versionsIdx = this.snapshot.getVersionsIdx();
+		LOGGER.log(Level.INFO, "Ripresa dal checkpoint: versione {0}, commit {1}", new Object[] { this.versions.get(this.versionsIdx), this.snapshot.getCommitsIdx() });
+		if (this.versionsIdx < targetVersionIdx)
+			this.applyDiff(last); // già confrontato con la data della release successiva
+		return true;
+	}
+	
+	private void saveCheckpoint(int commitsIdx) throws IOException {
+		if (this.checkpoint != null)
+			this.checkpoint.save(this.versionsIdx, commitsIdx, this.versions, this.commitsDigest, this.paths, this.authors, this.files);
+	}
+	
+	boolean needSwitchVersion(int versionsIdx, Commit next) {
+		return next.getDate().isAfter(this.versions.get(versionsIdx+1).getReleaseDate());
+	}
+	
+	private void evalStatistics(int versionIdx) throws IOException {
+		
+		List<Metrics> release = this.computeRelease(versionIdx);
+		this.rowSpill.append(release);
+		if (this.checkpoint != null)
+			this.checkpoint.appendRows(release);
 		
-		LOGGER.log(Level.INFO, "Valutate le statistiche per {0} entry", this.files.values().size());
+		LOGGER.log(Level.INFO, "Valutate le statistiche per {0} entry", this.files.size());
+	}
+	
+	/* Metriche di tutti i file per la release, dopo i commit applicati finora (senza Buggyness) */
+	List<Metrics> computeRelease(int versionIdx) {
+		Version version = this.versions.get(versionIdx);
+		LocalDateTime date = this.lastCommitDate;
+
+		/* I file sono indipendenti: il calcolo viene ripartito tra i core e le righe restano nell'ordine dei file */
+		int threshold = Settings.metricsParallelThreshold();
+		if (threshold > 0 && this.files.size() >= threshold)
+			return this.files.parallelStream().map(f -> f.computeMetrics(version, date)).filter(Objects::nonNull).collect(Collectors.toList());
+
+		List<Metrics> release = new ArrayList<>();
+		for (AnalyzedFile f : this.files) {
+			Metrics m = f.computeMetrics(version, date);
+			if (m != null)
+				release.add(m);
+		}
+		return release;
 	}
 	
-	private void applyDiff(int commitsIdx) {
-		for (Diff d : this.commits.get(commitsIdx).getDiffs()) {
-			String filename = d.getFilename();
+	/* Buggyness delle righe di una release secondo l'indice dei file buggy (bug collegati a tutta la storia o noti ad un cutoff) */
+	private List<Metrics> label(List<Metrics> release, BuggyFilesIndex buggyFiles) {
+		if (!release.isEmpty()) {
+			BitSet versionBuggyFiles = buggyFiles.getBuggyFiles(release.get(0).getVersion());
+			for (Metrics m : release)
+				m.setBuggyness(versionBuggyFiles.get(m.getFileId()));
+		}
+		return release;
+	}
+
+	void applyDiff(Commit c) {
+		for (Diff d : c.getDiffs()) {
+			int fileId = d.getFileId();
 			
-			AnalyzedFile analyzedFile;
-			if (this.files.containsKey(filename))
-				analyzedFile = this.files.get(filename);
-			else
-				analyzedFile = new AnalyzedFile(d.getFilename(), commits.get(commitsIdx).getDate());
+			AnalyzedFile analyzedFile = (fileId < this.filesById.length) ? this.filesById[fileId] : null;
+			if (analyzedFile == null) {
+				analyzedFile = new AnalyzedFile(fileId, this.paths.lookup(fileId), c.getDate());
+				this.addFile(analyzedFile);
+			}
 			
 			analyzedFile.updateChurn(d.getAddedLines(), d.getDeletedLines());
-			analyzedFile.insertCommit(this.commits.get(commitsIdx));
-
-			this.files.put(filename, analyzedFile);
+			analyzedFile.insertCommit(c);
 		}
+		this.lastCommitDate = c.getDate();
+	}
+
+	/* I percorsi vengono registrati dallo stream mentre il replay procede: l'indice per id cresce su richiesta */
+	private void addFile(AnalyzedFile f) {
+		int fileId = f.getFileId();
+		if (fileId >= this.filesById.length)
+			this.filesById = Arrays.copyOf(this.filesById, Math.max(fileId + 1, 2 * this.filesById.length));
+		this.filesById[fileId] = f;
+		this.files.add(f);
 	}
 	
-	private void createOutputFile() throws IOException {
-		List<Metrics> metrics = new ArrayList<>();
-		for (AnalyzedFile f : this.files.values())
-			metrics.addAll(f.getComputedMetrics());
-		
-		/* Ordina le release in base alla data e dopo in base al nome dei file */
-		Comparator<Metrics> comparator = Comparator.comparing(m -> m.getVersion().getReleaseDate());
-		comparator = comparator.thenComparing(Metrics::getName);
-		metrics.sort(comparator);
-		
-		File csvDataset = new File(String.format(OUTPUT_FILE_NAME_FORMAT, this.outputsFolder, this.projectName, "csv"));
-		File arffDataset = new File(String.format(OUTPUT_FILE_NAME_FORMAT, this.outputsFolder, this.projectName, "arff"));
+	private DatasetWriter openDatasetWriter() throws IOException {
+		Path csvDataset = Paths.get(String.format(OUTPUT_FILE_NAME_FORMAT, this.outputsFolder, this.projectName, "csv"));
+		Path arffDataset = Paths.get(String.format(OUTPUT_FILE_NAME_FORMAT, this.outputsFolder, this.projectName, "arff"));
+		Path columnarDataset = Settings.columnarOutput()
+				? Paths.get(String.format(OUTPUT_FILE_NAME_FORMAT, this.outputsFolder, this.projectName, ColumnarDataset.EXTENSION))
+				: null;
+		return new DatasetWriter(csvDataset, arffDataset, columnarDataset, this.projectName);
+	}
+	
+	private DatasetWriter openWalkForwardWriter(int cutoff) throws IOException {
+		Path csvDataset = Paths.get(String.format(WALK_FORWARD_FILE_NAME_FORMAT, this.outputsFolder, this.projectName, cutoff, "csv"));
+		Path arffDataset = Paths.get(String.format(WALK_FORWARD_FILE_NAME_FORMAT, this.outputsFolder, this.projectName, cutoff, "arff"));
+		Path columnarDataset = Settings.columnarOutput()
+				? Paths.get(String.format(WALK_FORWARD_FILE_NAME_FORMAT, this.outputsFolder, this.projectName, cutoff, ColumnarDataset.EXTENSION))
+				: null;
+		return new DatasetWriter(csvDataset, arffDataset, columnarDataset, this.projectName);
+	}
 
-		try (FileWriter csvWriter = new FileWriter(csvDataset, false);
-			 FileWriter arffWriter = new FileWriter(arffDataset, false)) {
+	/*
+	 * Cutoff richiesti con milestone1.walkForward, in ordine crescente: il cutoff n è il dataset delle prime n release,
+	 * chiuse alla data della release n+1, che deve esistere
+	 */
+	List<Integer> walkForwardCutoffs(int targetId) {
+		String value = Settings.walkForward();
+		TreeSet<Integer> requested = new TreeSet<>();
+		if (WALK_FORWARD_ALL.equals(value)) {
+			for (int cutoff = 1; cutoff <= targetId; cutoff++)
+				requested.add(cutoff);
+		} else if (!value.isEmpty()) {
+			for (String token : value.split(",")) {
+				int cutoff = Integer.parseInt(token.trim());
+				if (cutoff < 1 || cutoff >= this.versions.size())
+					throw new IllegalArgumentException(String.format("Cutoff del walk-forward non valido per %s: %d (release disponibili: %d)", this.projectName, cutoff, this.versions.size()));
+				requested.add(cutoff);
+			}
+		}
+		return new ArrayList<>(requested);
+	}
 
-			csvWriter.append(Metrics.CSV_HEADER);
-			arffWriter.append(String.format(Metrics.ARFF_HEADER_FORMAT, this.projectName));
+	/*
+	 * File buggy noti al cutoff: bug con FV rilasciata non dopo la release che chiude il cutoff, collegati
+	 * soltanto ai file dei commit fino alla stessa data
+	 */
+	private BuggyFilesIndex buggyFilesAtCutoff(int cutoff) {
+		LocalDateTime date = this.versions.get(cutoff).getReleaseDate();
+		List<Bug> known = new ArrayList<>();
+		for (Bug b : this.bugs)
+			if (!b.getFv().getReleaseDate().isAfter(date))
+				known.add(b);
+		return new BuggyFilesIndex(known, this.versions, date);
+	}
 
-			for (Metrics m : metrics) {
-				csvWriter.append(String.format("%s%n", m));
-				arffWriter.append(String.format("%s%n", m));
+	/* Ogni dataset rilegge le righe dall'inizio: le etichette di un cutoff non toccano quelle degli altri */
+	private void writeWalkForward() throws IOException {
+		for (int i = 0; i < this.cutoffs.size(); i++) {
+			int cutoff = this.cutoffs.get(i);
+			DatasetWriter writer = this.openWalkForwardWriter(cutoff);
+			try (DatasetWriter w = writer; RowSpill.Reader reader = this.rowSpill.reader(this.versions, this.paths)) {
+				for (int j = 0; j < cutoff; j++)
+					w.writeRelease(this.label(reader.nextRelease(j), this.cutoffBuggyFiles.get(i)));
 			}
+			LOGGER.log(Level.INFO, "Dataset walk-forward di {0} fino alla release {1} creato ({2} righe)", new Object[] { this.projectName, cutoff, writer.getRows() });
 		}
 	}
-	
+
 	private LocalDateTime maxDate(LocalDateTime d1, LocalDateTime d2) {
 		return (d1.isAfter(d2)) ? d1 : d2;
 	}
@@ -4,34 +4,51 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import it.uniroma2.isw2.milestone1.exceptions.GithubOwnerException;
 import it.uniroma2.isw2.milestone1.exceptions.GithubTokenException;
 import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
+import it.uniroma2.isw2.milestone1.utils.HttpTransport;
+import it.uniroma2.isw2.milestone1.utils.PipelineMetrics;
+import it.uniroma2.isw2.milestone1.utils.Settings;
 
+/*
+ * Costruisce i dataset dei progetti indicati come argomenti (di default BOOKKEEPER), ad esempio:
+ * java it.uniroma2.isw2.milestone1.Main BOOKKEEPER SYNCOPE
+ * I progetti vengono costruiti contemporaneamente e condividono il pool per il recupero dei commit e le connessioni HTTP;
+ * ogni progetto ha i propri file di output, cache e checkpoint.
+ */
 public class Main {
-	
+
 	private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
-	
-//	private static final String PROJECT_NAME = "SYNCOPE";    // Progetti sotto test
-	private static final String PROJECT_NAME = "BOOKKEEPER"; 
+
+	private static final String[] DEFAULT_PROJECTS = { "BOOKKEEPER" }; // Progetti sotto test
 	private static final String OUTPUTS_FOLDER = "outputs/"; // Directory dei risultati
-	
-	private static final String ERROR_DATASET_CREATION = "Errore nella costruzione del dataset: %s";
-	
-	private static void initOutputsFolder() throws IOException {
-		Path path = Paths.get(OUTPUTS_FOLDER);
-		if (!Files.exists(path)) // Se non esiste, crea la cartella dei risultati
-			Files.createDirectory(path);
-		
+	private static final String SUMMARY_FILE = "summary.csv"; // Riepilogo di tutti i progetti costruiti
+	private static final String METRICS_JSON_FILE = "metrics.json"; // Durate delle fasi, statistiche di cache e HTTP
+	private static final String METRICS_PROMETHEUS_FILE = "metrics.prom"; // Stesse metriche nel formato testuale di Prometheus
+
+	private static final String ERROR_DATASET_CREATION = "Errore nella costruzione del dataset di %s: %s";
+
+	private static void initOutputsFolder(String projectName) throws IOException {
+		Files.createDirectories(Paths.get(OUTPUTS_FOLDER)); // Se non esiste, crea la cartella dei risultati
+
 		// Controlla l'esistenza dei file di output
 		Path[] filesPaths = {
-				Paths.get(String.format("%s%s_metrics.csv", OUTPUTS_FOLDER, PROJECT_NAME)), 
-				Paths.get(String.format("%s%s_metrics.arff", OUTPUTS_FOLDER, PROJECT_NAME))
+				Paths.get(String.format("%s%s_metrics.csv", OUTPUTS_FOLDER, projectName)),
+				Paths.get(String.format("%s%s_metrics.arff", OUTPUTS_FOLDER, projectName))
 		};
-		
+
 		for (Path filePath : filesPaths) {
 			if (Files.exists(filePath)) // Se il file specifico già esiste lo cancella e lo ricrea
 				Files.delete(filePath);
@@ -39,26 +56,80 @@ public class Main {
 		}
 	}
 
-	public static void main(String[] args) {
-		
+	/* Gli errori di un progetto finiscono nel riepilogo senza interrompere gli altri */
+	private static BuildSummary.Entry buildProject(String projectName, ExecutorService fetchExecutor) {
+		long start = System.currentTimeMillis();
+		DatasetBuilder datasetBuilder = null;
+		String error = null;
+
 		try {
-			initOutputsFolder();
-			DatasetBuilder datasetBuilder = new DatasetBuilder(PROJECT_NAME, OUTPUTS_FOLDER);
+			initOutputsFolder(projectName);
+			datasetBuilder = new DatasetBuilder(projectName, OUTPUTS_FOLDER);
+			datasetBuilder.setFetchExecutor(fetchExecutor);
 			datasetBuilder.build();
-		} catch (GithubTokenException e) {
-			LOGGER.log(Level.SEVERE, String.format(ERROR_DATASET_CREATION, e.getMessage()));
-			e.printStackTrace();
-		} catch (GithubOwnerException e) {
-			LOGGER.log(Level.SEVERE, String.format(ERROR_DATASET_CREATION, e.getMessage()));
-			e.printStackTrace();	
-		} catch (RateLimitExceededGithubAPIException e) {
-			LOGGER.log(Level.SEVERE, String.format(ERROR_DATASET_CREATION, e.getMessage()));
+		} catch (GithubTokenException | GithubOwnerException | RateLimitExceededGithubAPIException e) {
+			error = String.valueOf(e.getMessage());
+			LOGGER.log(Level.SEVERE, String.format(ERROR_DATASET_CREATION, projectName, error));
 		} catch (IOException e) {
-			LOGGER.log(Level.SEVERE, String.format("Errore inizializzazione dei file di output: %s", e.getMessage()));
+			error = String.valueOf(e.getMessage());
+			LOGGER.log(Level.SEVERE, String.format("Errore inizializzazione dei file di output di %s: %s", projectName, error));
 		} catch (Exception e) {
-			LOGGER.log(Level.SEVERE, String.format("Errore generico: %s", e.getMessage()));
-		} 
-		
+			error = String.valueOf(e.getMessage());
+			LOGGER.log(Level.SEVERE, String.format("Errore generico per %s: %s", projectName, error), e);
+		}
+
+		return new BuildSummary.Entry(projectName, datasetBuilder, System.currentTimeMillis() - start, error);
 	}
-	
+
+	public static void main(String[] args) {
+
+		/* Nomi dei progetti in maiuscolo, senza duplicati, nell'ordine indicato */
+		LinkedHashSet<String> names = new LinkedHashSet<>();
+		for (String arg : (args.length > 0) ? args : DEFAULT_PROJECTS)
+			names.add(arg.trim().toUpperCase(Locale.ROOT));
+		List<String> projects = new ArrayList<>(names);
+
+		/* Ogni progetto tiene al più fetch.parallelism richieste in volo: il pool condiviso non le fa mai attendere */
+		int concurrentBuilds = Math.min(projects.size(), Settings.projectsParallelism());
+		ExecutorService buildExecutor = Executors.newFixedThreadPool(concurrentBuilds);
+		ExecutorService fetchExecutor = Executors.newFixedThreadPool(concurrentBuilds * Settings.fetchParallelism());
+		BuildSummary summary = new BuildSummary(projects);
+
+		LOGGER.log(Level.INFO, "Costruzione dei dataset di {0} ({1} alla volta)", new Object[] { projects, concurrentBuilds });
+		try {
+			List<Future<?>> builds = new ArrayList<>();
+			for (String project : projects)
+				builds.add(buildExecutor.submit(() -> summary.add(buildProject(project, fetchExecutor))));
+
+			for (Future<?> build : builds)
+				build.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.log(Level.SEVERE, "Costruzione dei dataset interrotta");
+		} catch (ExecutionException e) {
+			LOGGER.log(Level.SEVERE, String.format("Errore generico: %s", e.getCause()));
+		} finally {
+			buildExecutor.shutdownNow();
+			fetchExecutor.shutdownNow();
+		}
+
+		HttpTransport.getInstance().logStatistics();
+		summary.log();
+		try {
+			summary.write(Paths.get(OUTPUTS_FOLDER, SUMMARY_FILE));
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, String.format("Errore nella scrittura del riepilogo: %s", e.getMessage()));
+		}
+		try {
+			PipelineMetrics.getInstance().writeJson(Paths.get(OUTPUTS_FOLDER, METRICS_JSON_FILE));
+			PipelineMetrics.getInstance().writePrometheus(Paths.get(OUTPUTS_FOLDER, METRICS_PROMETHEUS_FILE));
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, String.format("Errore nella scrittura delle metriche: %s", e.getMessage()));
+		}
+
+		if (!summary.isSuccessful())
+			System.exit(1);
+
+	}
+
 }
@@ -1,15 +1,21 @@
 package it.uniroma2.isw2.milestone1.entities;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.function.IntFunction;
 
 public class AnalyzedFile {
 
+	private static final int CHANGE_SETS_CAPACITY = 8; // oltre questa dimensione la lista viene riallocata al reset
+	
 	private LocalDateTime birth;
+	private int fileId;
 	private String name;
 	private int size;
 	private int additions;
@@ -18,20 +24,34 @@ public class AnalyzedFile {
 	private	int maxAdditions;
 	private int updateTimes;
 	
-	private Set<Commit> commits;
-	
-	List<Metrics> evaluatedMetrics;
+	/*
+	 * Commit, autori e file modificati nella release corrente, come id interi. I file modificati restano gli array
+	 * dei commit, condivisi tra tutti i file del commit, e vengono uniti soltanto al calcolo della riga
+	 */
+	private int revisions;
+	private int lastCommitId;
+	private IntList authors;
+	private List<int[]> changeSets;
 	
-	public AnalyzedFile(String name, LocalDateTime birth) {
-		this.evaluatedMetrics = new ArrayList<>();
+	/* name: istanza unica del percorso conservata nel dizionario di progetto */
+	public AnalyzedFile(int fileId, String name, LocalDateTime birth) {
+		this.fileId = fileId;
 		this.name = name;
 		this.birth = birth;
 		this.size = 0;
+		this.authors = new IntList();
+		this.changeSets = new ArrayList<>(CHANGE_SETS_CAPACITY);
 		this.resetMetrics();
 	}
 	
 	private void resetMetrics() {
-		this.commits = new HashSet<>();
+		this.revisions = 0;
+		this.lastCommitId = -1;
+		this.authors.clear();
+		if (this.changeSets.size() > CHANGE_SETS_CAPACITY)
+			this.changeSets = new ArrayList<>(CHANGE_SETS_CAPACITY);
+		else
+			this.changeSets.clear();
 		this.additions = 0;
 		this.deletions = 0;
 		this.maxChurn=0;
@@ -43,6 +63,10 @@ public class AnalyzedFile {
 		return size;
 	}
 	
+	public int getFileId() {
+		return fileId;
+	}
+	
 	public String getName() {
 		return name;
 	}
@@ -65,61 +89,87 @@ public class AnalyzedFile {
 		this.size += churn;
 	}
 	
+	/* I diff di un commit vengono applicati consecutivamente: basta confrontare l'ultimo commit inserito */
 	public void insertCommit(Commit commit) {
-		commits.add(commit);
+		if (commit.getId() == this.lastCommitId)
+			return;
+		this.lastCommitId = commit.getId();
+		this.revisions++;
+		this.authors.add(commit.getAuthorId());
+		this.changeSets.add(commit.getFileIds());
+	}
+	
+	/* File distinti nell'unione dei commit della release (gli id di ciascun commit sono già distinti) */
+	private IntList changedFiles() {
+		IntList changed = new IntList();
+		for (int[] fileIds : this.changeSets)
+			changed.addAll(fileIds);
+		return changed;
 	}
 	
-	public void computeMetrics(Version currentVersion, LocalDateTime currentDate, List<Bug> bugs) {
+	/* Riga della versione corrente senza Buggyness, nota solo a storia completa; null se il file non ha ancora righe */
+	public Metrics computeMetrics(Version currentVersion, LocalDateTime currentDate) {
 		if (this.size > 0) {
 			Metrics m = new Metrics();	
 			
 			int churn = Math.abs(this.additions - this.deletions);
 			m.setVersion(currentVersion);
+			m.setFileId(this.fileId);
 			m.setName(this.name);
 			m.setSize(this.size);
-			m.setNumberOfRevisions(this.commits.size());
-			m.setNumberOfAuthors(this.numberOfAuthors());
+			m.setNumberOfRevisions(this.revisions);
+			m.setNumberOfAuthors(this.authors.distinctCount());
 			m.setLOCAdded(this.additions);
 			m.setMaxLOCAdded(this.maxAdditions);
 			m.setAverageLOCAdded((this.updateTimes == 0) ? 0 : (double)this.additions/this.updateTimes);
 			m.setChurn(churn);
 			m.setMaxChurn(this.maxChurn);
 			m.setAverageChurn((this.updateTimes == 0) ? 0 : ((double)churn/this.updateTimes));
-			m.setChangeSetSize(this.chgSetSize());
+			m.setChangeSetSize((this.changeSets.size() == 1) ? this.changeSets.get(0).length : this.changedFiles().distinctCount());
 			m.setAge((currentDate == null) ? 0 : ChronoUnit.WEEKS.between(this.birth, currentDate));
-			m.setBuggyness(this.isBuggy(currentVersion, bugs));
 			
-			this.evaluatedMetrics.add(m);
 			this.resetMetrics();
+			return m;
 		}
+		return null;
 	}
 	
-	public List<Metrics> getComputedMetrics() {
-		return this.evaluatedMetrics;
+	/* Stato del file a metà replay, salvato nel checkpoint */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(this.fileId);
+		out.writeLong(this.birth.toEpochSecond(ZoneOffset.UTC));
+		out.writeInt(this.birth.getNano());
+		out.writeInt(this.size);
+		out.writeInt(this.additions);
+		out.writeInt(this.deletions);
+		out.writeInt(this.maxChurn);
+		out.writeInt(this.maxAdditions);
+		out.writeInt(this.updateTimes);
+		out.writeInt(this.revisions);
+		out.writeInt(this.lastCommitId);
+		this.authors.writeTo(out);
+		this.changedFiles().distinct().writeTo(out); // ripristinato come unico change set: deve essere già distinto
 	}
 	
-	private boolean isBuggy(Version currentVersion, List<Bug> bugs) {
-		for (Bug b : bugs) {
-			if (b.infects(this.name) && b.belongsTo(currentVersion)) {
-				return true;
-			}
-		}
-		return false;
-	}
-	
-	private int numberOfAuthors() {
-		Set<String> authors = new HashSet<>();
-		this.commits.forEach(c->authors.add(c.getAuthor()));
-		return authors.size();
-	}
-	
-	private int chgSetSize() {
-		Set<String> files = new HashSet<>();
-		this.commits.forEach(c-> {
-			List<Diff> fileChanged = c.getDiffs();
-			fileChanged.forEach(d-> files.add(d.getFilename()));
-		});
-		return files.size();
+	/* names: percorso associato all'id del file nel dizionario di progetto */
+	public static AnalyzedFile readState(DataInput in, IntFunction<String> names) throws IOException {
+		int fileId = in.readInt();
+		LocalDateTime birth = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+		
+		AnalyzedFile f = new AnalyzedFile(fileId, names.apply(fileId), birth);
+		f.size = in.readInt();
+		f.additions = in.readInt();
+		f.deletions = in.readInt();
+		f.maxChurn = in.readInt();
+		f.maxAdditions = in.readInt();
+		f.updateTimes = in.readInt();
+		f.revisions = in.readInt();
+		f.lastCommitId = in.readInt();
+		f.authors = IntList.readFrom(in);
+		IntList changed = IntList.readFrom(in);
+		if (changed.size() > 0)
+			f.changeSets.add(changed.toArray());
+		return f;
 	}
 	
 }
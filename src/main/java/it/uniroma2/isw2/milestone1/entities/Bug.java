@@ -2,9 +2,9 @@ package it.uniroma2.isw2.milestone1.entities;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -18,10 +18,10 @@ public class Bug {
 	private Version fv;
 	private Version ov;
 	private Version iv;
-	private Set<String> infectedFiles; 
+	private Map<Integer, LocalDateTime> infectedFiles; // id dei file nel dizionario di progetto -> data del primo commit che li collega al bug
 	
 	private Bug() {
-		this.infectedFiles = new HashSet<>();
+		this.infectedFiles = new HashMap<>();
 	}
 
 	public String getKey() {
@@ -48,39 +48,25 @@ public class Bug {
 		return iv;
 	}
 
-	public void setIv(List<Bug> bugs, List<Version> versions) {
-		double sumP = 0.0;
-		int counter = 0;
-
-		for (Bug b : bugs) {
-			if (b.getFv().getReleaseDate().isBefore(this.ov.getReleaseDate())) {
-				sumP += b.getProportion(versions);
-				counter++;
-			}
-		}
-
-		int p = (counter == 0) ? 1 : (int)Math.ceil(sumP/counter);
-		int fvIndex = versions.indexOf(this.fv);
-		int ovIndex = versions.indexOf(this.ov);
-		int ivIndex = fvIndex - (fvIndex - ovIndex)*p;
-
-		this.iv = versions.get(Math.max(ivIndex, 0));
+	public void setIv(Version iv) {
+		this.iv = iv;
 	}
 	
-	private double getProportion(List<Version> versions) {
-		int fvIndex = versions.indexOf(this.fv);
-		int ovIndex = versions.indexOf(this.ov);
-		int ivIndex = versions.indexOf(this.iv);
+	/* P = (FV - IV) / (FV - OV), calcolata sugli id delle versioni (posizione nell'ordine di rilascio) */
+	public double getProportion() {
+		int fvId = this.fv.getId();
+		int ovId = this.ov.getId();
+		int ivId = this.iv.getId();
 
-		return ((double)(fvIndex-ivIndex)/Math.max(fvIndex - ovIndex, 1));
+		return ((double)(fvId-ivId)/Math.max(fvId - ovId, 1));
 	}
 
-	public Set<String> getInfectedFiles() {
+	public Map<Integer, LocalDateTime> getInfectedFiles() {
 		return infectedFiles;
 	}
 
-	public void setInfectedFiles(Set<String> infectedFiles) {
-		this.infectedFiles = infectedFiles;
+	public void clearInfectedFiles() {
+		this.infectedFiles.clear();
 	}
 	
 	public static Bug fromJsonObject(JsonObject json, List<Version> versions) {
@@ -170,12 +156,13 @@ public class Bug {
 		return null;
 	}
 	
-	public void addInfectedFile(String filename) {
-		this.infectedFiles.add(filename);
+	/* I commit arrivano in ordine di data: resta la data del primo che collega il file */
+	public void addInfectedFile(int fileId, LocalDateTime linkDate) {
+		this.infectedFiles.putIfAbsent(fileId, linkDate);
 	}
 	
-	public boolean infects(String filename) {
-		return this.infectedFiles.contains(filename);
+	public boolean infects(int fileId) {
+		return this.infectedFiles.containsKey(fileId);
 	}
 	
 	public String toString() {
@@ -9,15 +9,43 @@ public class Commit {
 
 	private static final DateTimeFormatter FORMAT = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
 
+	private int id;
+	private int authorId;
+	private int[] fileIds;
 	private String sha;
 	private LocalDateTime date;
 	private String message;
-	private String author;
 	
 	private List<Diff> diffs;
 	
 	public Commit() {
 		diffs = new ArrayList<>();
+		fileIds = new int[0];
+	}
+	
+	public int getId() {
+		return id;
+	}
+	
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	public int getAuthorId() {
+		return authorId;
+	}
+	
+	public void setAuthorId(int authorId) {
+		this.authorId = authorId;
+	}
+	
+	/* Id distinti dei file modificati dal commit */
+	public int[] getFileIds() {
+		return fileIds;
+	}
+	
+	public void setFileIds(int[] fileIds) {
+		this.fileIds = fileIds;
 	}
 	
 	public String getSha() {
@@ -44,15 +72,6 @@ public class Commit {
 	}
 
 
-	public String getAuthor() {
-		return author;
-	}
-
-
-	public void setAuthor(String author) {
-		this.author = author;
-	}
-	
 	public void addDiff(Diff d) {
 		this.diffs.add(d);
 	}
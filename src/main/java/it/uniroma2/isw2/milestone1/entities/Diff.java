@@ -2,16 +2,16 @@ package it.uniroma2.isw2.milestone1.entities;
 
 public class Diff {
 
-	private String filename;
+	private int fileId; // id del percorso del file nel dizionario di progetto
 	private int addedLines;
 	private int deletedLines;
 
-	public String getFilename() {
-		return filename;
+	public int getFileId() {
+		return fileId;
 	}
 
-	public void setFilename(String filename) {
-		this.filename = filename;
+	public void setFileId(int fileId) {
+		this.fileId = fileId;
 	}
 
 	public int getAddedLines() {
@@ -0,0 +1,87 @@
+package it.uniroma2.isw2.milestone1.entities;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/* Lista di interi senza boxing, usata per contare gli id distinti (autori, file) di una release */
+class IntList {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private int[] values;
+	private int size;
+
+	IntList() {
+		this.values = new int[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	void add(int value) {
+		ensureCapacity(this.size + 1);
+		this.values[this.size++] = value;
+	}
+
+	void addAll(int[] other) {
+		ensureCapacity(this.size + other.length);
+		System.arraycopy(other, 0, this.values, this.size, other.length);
+		this.size += other.length;
+	}
+
+	/* Ordina i valori sul posto e conta quelli distinti */
+	int distinctCount() {
+		Arrays.sort(this.values, 0, this.size);
+		int distinct = 0;
+		for (int i = 0; i < this.size; i++)
+			if (i == 0 || this.values[i] != this.values[i-1])
+				distinct++;
+		return distinct;
+	}
+
+	/* Ordina i valori sul posto e rimuove i duplicati */
+	IntList distinct() {
+		Arrays.sort(this.values, 0, this.size);
+		int distinct = 0;
+		for (int i = 0; i < this.size; i++)
+			if (distinct == 0 || this.values[i] != this.values[distinct-1])
+				this.values[distinct++] = this.values[i];
+		this.size = distinct;
+		return this;
+	}
+
+	/* La capacità cresciuta oltre quella iniziale viene rilasciata */
+	void clear() {
+		if (this.values.length > INITIAL_CAPACITY)
+			this.values = new int[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(this.values, this.size);
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+		out.writeInt(this.size);
+		for (int i = 0; i < this.size; i++)
+			out.writeInt(this.values[i]);
+	}
+
+	static IntList readFrom(DataInput in) throws IOException {
+		IntList list = new IntList();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++)
+			list.add(in.readInt());
+		return list;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > this.values.length)
+			this.values = Arrays.copyOf(this.values, Math.max(capacity, this.values.length * 2));
+	}
+
+}
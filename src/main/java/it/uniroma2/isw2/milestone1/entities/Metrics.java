@@ -1,5 +1,12 @@
 package it.uniroma2.isw2.milestone1.entities;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.function.IntFunction;
+
 public class Metrics {
 
 	public static final String ARFF_HEADER_FORMAT = "@relation %s\n" +
@@ -26,6 +33,7 @@ public class Metrics {
 	public static final String CSV_HEADER = "VersionId,Version,Name,Size,NRev,NAuth,LOC added,MAX LOC added,AVG LOC added,Churn,MAX Churn,AVG Churn,ChgSetSize,Age,Buggyness\n";
 	
 	private Version version;
+	private int fileId;
 	private String name;
 	private int size;
 	private int numberOfRevisions;
@@ -40,6 +48,8 @@ public class Metrics {
 	private long age;
 	private char buggyness;
 		
+	private static final int DECIMALS = 7;
+
 	@Override
 	public String toString() {
 		return String.format("%d,%s,%s,%d,%d,%d,%d,%d,%.7f,%d,%d,%.7f,%d,%d,%c",
@@ -50,10 +60,75 @@ public class Metrics {
 		);
 	}
 	
+	/* Stessa riga di toString(), scritta nel buffer senza passare da String.format */
+	public void appendTo(StringBuilder sb, char decimalSeparator) {
+		sb.append(this.version.getId()).append(',')
+			.append(this.version.getName()).append(',')
+			.append(this.name).append(',')
+			.append(this.size).append(',')
+			.append(this.numberOfRevisions).append(',')
+			.append(this.numberOfAuthors).append(',')
+			.append(this.locAdded).append(',')
+			.append(this.maxLOCAdded).append(',');
+		appendFixed(sb, this.averageLOCAdded, decimalSeparator);
+		sb.append(',')
+			.append(this.churn).append(',')
+			.append(this.maxChurn).append(',');
+		appendFixed(sb, this.averageChurn, decimalSeparator);
+		sb.append(',')
+			.append(this.changeSetSize).append(',')
+			.append(this.age).append(',')
+			.append(this.buggyness);
+	}
+	
+	/*
+	 * Equivalente a %.7f: come il Formatter, arrotonda HALF_UP le cifre della rappresentazione
+	 * più breve del double (Double.toString)
+	 */
+	private static void appendFixed(StringBuilder sb, double value, char decimalSeparator) {
+		double abs = value;
+		if (value < 0 || (value == 0 && 1/value < 0)) {
+			sb.append('-');
+			abs = -value;
+		}
+		
+		String s = Double.toString(abs);
+		if (s.indexOf('E') >= 0) { // notazione scientifica per valori molto piccoli o molto grandi
+			sb.append(new BigDecimal(s).setScale(DECIMALS, RoundingMode.HALF_UP).toPlainString().replace('.', decimalSeparator));
+			return;
+		}
+		
+		int dot = s.indexOf('.');
+		char[] digits = new char[dot + DECIMALS];
+		for (int i = 0; i < digits.length; i++) {
+			int k = (i < dot) ? i : i + 1;
+			digits[i] = (k < s.length()) ? s.charAt(k) : '0';
+		}
+		
+		int next = dot + 1 + DECIMALS;
+		boolean carry = next < s.length() && s.charAt(next) >= '5';
+		for (int i = digits.length - 1; carry && i >= 0; i--) {
+			if (digits[i] == '9') {
+				digits[i] = '0';
+			} else {
+				digits[i]++;
+				carry = false;
+			}
+		}
+		
+		if (carry)
+			sb.append('1');
+		sb.append(digits, 0, dot).append(decimalSeparator).append(digits, dot, DECIMALS);
+	}
+	
 	public void setVersion(Version version) {
 		this.version = version;
 	}
 
+	public void setFileId(int fileId) {
+		this.fileId = fileId;
+	}
+
 	public void setName(String name) {
 		this.name = name;
 	}
@@ -106,12 +181,100 @@ public class Metrics {
 		return version;
 	}
 
+	public int getFileId() {
+		return fileId;
+	}
+
 	public String getName() {
 		return name;
 	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getNumberOfRevisions() {
+		return numberOfRevisions;
+	}
+
+	public int getNumberOfAuthors() {
+		return numberOfAuthors;
+	}
+
+	public int getLOCAdded() {
+		return locAdded;
+	}
+
+	public int getMaxLOCAdded() {
+		return maxLOCAdded;
+	}
+
+	public double getAverageLOCAdded() {
+		return averageLOCAdded;
+	}
+
+	public int getChurn() {
+		return churn;
+	}
+
+	public int getMaxChurn() {
+		return maxChurn;
+	}
+
+	public double getAverageChurn() {
+		return averageChurn;
+	}
+
+	public int getChangeSetSize() {
+		return changeSetSize;
+	}
+
+	public long getAge() {
+		return age;
+	}
+
+	public char getBuggyness() {
+		return buggyness;
+	}
 	
 	public void setBuggyness(boolean buggyness) {
 		this.buggyness = (buggyness) ? 'Y' : 'N';
 	}
 	
+	/* Riga senza Buggyness, che viene ricalcolata con i bug correnti quando la riga viene riletta */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(this.version.getId());
+		out.writeInt(this.fileId);
+		out.writeInt(this.size);
+		out.writeInt(this.numberOfRevisions);
+		out.writeInt(this.numberOfAuthors);
+		out.writeInt(this.locAdded);
+		out.writeInt(this.maxLOCAdded);
+		out.writeDouble(this.averageLOCAdded);
+		out.writeInt(this.churn);
+		out.writeInt(this.maxChurn);
+		out.writeDouble(this.averageChurn);
+		out.writeInt(this.changeSetSize);
+		out.writeLong(this.age);
+	}
+	
+	public static Metrics readFrom(DataInput in, IntFunction<Version> versions, IntFunction<String> names) throws IOException {
+		Metrics m = new Metrics();
+		m.version = versions.apply(in.readInt());
+		m.fileId = in.readInt();
+		m.name = names.apply(m.fileId);
+		m.size = in.readInt();
+		m.numberOfRevisions = in.readInt();
+		m.numberOfAuthors = in.readInt();
+		m.locAdded = in.readInt();
+		m.maxLOCAdded = in.readInt();
+		m.averageLOCAdded = in.readDouble();
+		m.churn = in.readInt();
+		m.maxChurn = in.readInt();
+		m.averageChurn = in.readDouble();
+		m.changeSetSize = in.readInt();
+		m.age = in.readLong();
+		return m;
+	}
+	
 }
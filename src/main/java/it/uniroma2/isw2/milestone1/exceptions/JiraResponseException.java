@@ -0,0 +1,25 @@
+package it.uniroma2.isw2.milestone1.exceptions;
+
+import java.io.IOException;
+
+public class JiraResponseException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final int code;
+
+	public JiraResponseException(String url, int code) {
+		super(String.format("Risposta non valida da %s: %d", url, code));
+		this.code = code;
+	}
+	
+	public int getCode() {
+		return this.code;
+	}
+	
+	/* Errore del server (5xx): a differenza degli errori della richiesta può essere temporaneo */
+	public boolean isServerError() {
+		return this.code >= 500;
+	}
+	
+}
@@ -0,0 +1,52 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+
+/* Indice chiave JIRA (example_key: BOOKKEEPER-1105) -> commit che la citano nel messaggio */
+public class BugKeyIndex {
+
+	/* La chiave termina alla prima cifra mancante: BOOKKEEPER-1 non viene riconosciuta dentro BOOKKEEPER-10 */
+	private static final Pattern BUG_KEY = Pattern.compile("[A-Z][A-Z0-9_]*-\\d+(?!\\d)");
+
+	private final Map<String, List<Commit>> commitsByKey;
+
+	public BugKeyIndex() {
+		this.commitsByKey = new HashMap<>();
+	}
+
+	public static Set<String> extractKeys(String message) {
+		Set<String> keys = new LinkedHashSet<>();
+		if (message == null)
+			return keys;
+
+		Matcher matcher = BUG_KEY.matcher(message);
+		while (matcher.find())
+			keys.add(matcher.group());
+		return keys;
+	}
+
+	public void add(Commit commit) {
+		for (String key : extractKeys(commit.getMessage()))
+			this.commitsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(commit);
+	}
+
+	public void addAll(List<Commit> commits) {
+		for (Commit c : commits)
+			add(c);
+	}
+
+	public List<Commit> commitsFor(String key) {
+		return this.commitsByKey.getOrDefault(key, Collections.emptyList());
+	}
+
+}
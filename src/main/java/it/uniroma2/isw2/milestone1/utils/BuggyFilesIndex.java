@@ -0,0 +1,71 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.uniroma2.isw2.milestone1.entities.Bug;
+import it.uniroma2.isw2.milestone1.entities.Version;
+
+/*
+ * Insieme (id nel dizionario di progetto) dei file buggy di ciascuna versione, costruito una sola volta a partire dall'intervallo [IV, FV) di ogni bug:
+ * un file è buggy in una versione se è toccato da un bug con IV <= versione < FV (vedi Bug.belongsTo)
+ */
+public class BuggyFilesIndex {
+
+	private static final BitSet NO_FILES = new BitSet();
+
+	private final Map<Integer, BitSet> buggyFilesByVersion;
+
+	/* Le versioni devono essere ordinate per data di rilascio */
+	public BuggyFilesIndex(List<Bug> bugs, List<Version> versions) {
+		this(bugs, versions, null);
+	}
+
+	/* linkedUntil: soltanto i file collegati ai bug da commit non successivi alla data (null = tutti), come nel walk-forward */
+	public BuggyFilesIndex(List<Bug> bugs, List<Version> versions, LocalDateTime linkedUntil) {
+		this.buggyFilesByVersion = new HashMap<>();
+
+		for (Bug b : bugs) {
+			if (b.getIv() == null)
+				continue;
+
+			BitSet infected = new BitSet();
+			b.getInfectedFiles().forEach((fileId, linkDate) -> {
+				if (linkedUntil == null || !linkDate.isAfter(linkedUntil))
+					infected.set(fileId);
+			});
+			if (infected.isEmpty())
+				continue;
+
+			for (int i = firstVersionNotBefore(versions, b.getIv()); i < versions.size(); i++) {
+				Version v = versions.get(i);
+				if (!b.getFv().getReleaseDate().isAfter(v.getReleaseDate()))
+					break;
+				this.buggyFilesByVersion.computeIfAbsent(v.getId(), id -> new BitSet()).or(infected);
+			}
+		}
+	}
+
+	/* Ricerca binaria della prima versione rilasciata non prima della versione indicata */
+	private static int firstVersionNotBefore(List<Version> versions, Version version) {
+		int low = 0;
+		int high = versions.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (versions.get(mid).getReleaseDate().isBefore(version.getReleaseDate()))
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/* Id dei file buggy nella versione (da non modificare) */
+	public BitSet getBuggyFiles(Version version) {
+		return this.buggyFilesByVersion.getOrDefault(version.getId(), NO_FILES);
+	}
+
+}
@@ -0,0 +1,89 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonParser;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+
+/*
+ * Riscrive una cache di Github nel formato ridotto (vedi CommitRecords): le risposte complete dei commit (commit-info/)
+ * diventano record ridotti (commit-record/) e le pagine della lista dei commit (commit-list/) conservano soltanto sha e data (commit-page/).
+ * La nuova cache viene scritta accanto alla vecchia e la sostituisce soltanto a migrazione completata.
+ */
+public class CacheMigrator {
+
+	private static final Logger LOGGER = Logger.getLogger(CacheMigrator.class.getName());
+
+	private static final String MIGRATING_SUFFIX = ".migrating";
+
+	private CacheMigrator() {
+
+	}
+
+	/* Restituisce il numero di risposte complete convertite (0 se la cache era già nel formato ridotto) */
+	public static int migrate(Path packPath) throws IOException {
+		Path migrating = packPath.resolveSibling(packPath.getFileName() + MIGRATING_SUFFIX);
+		Files.deleteIfExists(migrating);
+		long sizeBefore = Files.size(packPath);
+		int converted = 0;
+
+		try (PackedCache source = new PackedCache(packPath)) {
+			if (!needsMigration(source))
+				return 0;
+
+			try (PackedCache target = new PackedCache(migrating)) {
+				List<String> keys = new ArrayList<>(source.keys());
+				Collections.sort(keys);
+				for (String key : keys) {
+					if (key.startsWith(GitHelper.KEY_COMMIT_INFO)) {
+						String sha = key.substring(GitHelper.KEY_COMMIT_INFO.length());
+						if (!source.contains(GitHelper.KEY_COMMIT_RECORD + sha)) {
+							target.put(GitHelper.KEY_COMMIT_RECORD + sha, toRecord(source, key, sha));
+							converted++;
+						}
+					} else if (key.startsWith(GitHelper.KEY_COMMIT_LIST)) {
+						String page = GitHelper.KEY_COMMIT_PAGE + key.substring(GitHelper.KEY_COMMIT_LIST.length());
+						if (!source.contains(page))
+							target.put(page, CommitRecords.projectListPage(JsonParser.parseString(source.get(key)).getAsJsonArray()).toString());
+					} else {
+						ByteBuffer body = source.read(key);
+						byte[] bytes = new byte[body.remaining()];
+						body.get(bytes);
+						target.put(key, bytes);
+					}
+				}
+			}
+		}
+
+		Files.move(migrating, packPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		LOGGER.log(Level.INFO, "Cache {0} migrata: {1} commit convertiti, {2} KB -> {3} KB",
+				new Object[] { packPath, converted, sizeBefore / 1024, Files.size(packPath) / 1024 });
+		return converted;
+	}
+
+	private static boolean needsMigration(PackedCache cache) {
+		for (String key : cache.keys())
+			if (key.startsWith(GitHelper.KEY_COMMIT_INFO) || key.startsWith(GitHelper.KEY_COMMIT_LIST))
+				return true;
+		return false;
+	}
+
+	/* Dizionari temporanei: i record ridotti conservano percorsi e autori come stringhe */
+	private static byte[] toRecord(PackedCache source, String key, String sha) throws IOException {
+		SymbolTable paths = new SymbolTable();
+		SymbolTable authors = new SymbolTable();
+		Commit c = RestHelper.decode(source.open(key), reader -> CommitDecoder.decode(reader, sha, paths, authors));
+		return CommitRecords.encode(c, paths, authors);
+	}
+
+}
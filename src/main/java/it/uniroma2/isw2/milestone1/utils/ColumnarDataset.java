@@ -0,0 +1,217 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Lettura del dataset nel formato binario a colonne scritto da ColumnarDatasetWriter.
+ * Il file viene mappato in memoria: ogni colonna è una vista tipizzata sui byte del file, senza copie né parsing,
+ * e le pagine vengono caricate dal sistema operativo solo quando la colonna viene letta.
+ *
+ * Formato (little endian, sezioni allineate a 8 byte):
+ * - prefisso: magic, versione del formato, numero di righe, numero di colonne, lunghezza dell'header (int)
+ * - un descrittore per colonna, nell'ordine di Metrics.CSV_HEADER: nome (short lunghezza + UTF-8), tipo (byte),
+ *   offset e lunghezza dei dati, offset e lunghezza del dizionario (long, 0 se la colonna non ha dizionario)
+ * - dati: un valore per riga, della larghezza del tipo
+ * - dizionario: numero di valori (int), poi per ogni valore lunghezza (int) e byte UTF-8; i dati sono gli indici nel dizionario
+ */
+public class ColumnarDataset {
+
+	public static final String EXTENSION = "m1c";
+
+	static final int MAGIC = 0x4331444D; // "MD1C" in little endian
+	static final int FORMAT_VERSION = 1;
+	static final int PREFIX_LENGTH = 5 * Integer.BYTES;
+	static final int ALIGNMENT = 8;
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	public enum Type {
+
+		INT32(1, Integer.BYTES),
+		INT64(2, Long.BYTES),
+		FLOAT64(3, Double.BYTES),
+		CHAR8(4, Byte.BYTES), // carattere ASCII, ad esempio Y/N
+		DICTIONARY(5, Integer.BYTES); // indice nel dizionario della colonna
+
+		private final byte code;
+		private final int width;
+
+		Type(int code, int width) {
+			this.code = (byte) code;
+			this.width = width;
+		}
+
+		byte getCode() {
+			return code;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		static Type of(byte code) throws IOException {
+			for (Type t : values())
+				if (t.code == code)
+					return t;
+			throw new IOException(String.format("Tipo di colonna sconosciuto: %d", code));
+		}
+
+	}
+
+	private static class Column {
+
+		private final Type type;
+		private final ByteBuffer data;
+		private final List<String> dictionary;
+
+		Column(Type type, ByteBuffer data, List<String> dictionary) {
+			this.type = type;
+			this.data = data;
+			this.dictionary = dictionary;
+		}
+
+	}
+
+	private final int rows;
+	private final Map<String, Column> columns;
+
+	private ColumnarDataset(int rows, Map<String, Column> columns) {
+		this.rows = rows;
+		this.columns = columns;
+	}
+
+	/* Le mappature restano valide anche dopo la chiusura del canale */
+	public static ColumnarDataset open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer prefix = ByteBuffer.allocate(PREFIX_LENGTH).order(ORDER);
+			readFully(channel, prefix, 0);
+			if (prefix.getInt() != MAGIC)
+				throw new IOException(String.format("%s non è un dataset a colonne", path));
+			int version = prefix.getInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException(String.format("Versione del formato non supportata in %s: %d", path, version));
+			int rows = prefix.getInt();
+			int count = prefix.getInt();
+			int headerLength = prefix.getInt();
+
+			ByteBuffer header = ByteBuffer.allocate(headerLength - PREFIX_LENGTH).order(ORDER);
+			readFully(channel, header, PREFIX_LENGTH);
+
+			Map<String, Column> columns = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				byte[] name = new byte[header.getShort() & 0xFFFF];
+				header.get(name);
+				Type type = Type.of(header.get());
+				long dataOffset = header.getLong();
+				long dataLength = header.getLong();
+				long dictionaryOffset = header.getLong();
+				long dictionaryLength = header.getLong();
+				if (dataLength != (long) rows * type.getWidth() || dataOffset + dataLength > channel.size() || dictionaryOffset + dictionaryLength > channel.size())
+					throw new IOException(String.format("Colonna troncata in %s", path));
+
+				ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataLength);
+				List<String> dictionary = (type == Type.DICTIONARY)
+						? readDictionary(channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, dictionaryLength).order(ORDER))
+						: Collections.emptyList();
+				columns.put(new String(name, StandardCharsets.UTF_8), new Column(type, data, dictionary));
+			}
+			return new ColumnarDataset(rows, columns);
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException("Header del dataset a colonne troncato");
+		buffer.flip();
+	}
+
+	private static List<String> readDictionary(ByteBuffer buffer) {
+		int size = buffer.getInt();
+		List<String> values = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			byte[] value = new byte[buffer.getInt()];
+			buffer.get(value);
+			values.add(new String(value, StandardCharsets.UTF_8));
+		}
+		return Collections.unmodifiableList(values);
+	}
+
+	public int getRowCount() {
+		return rows;
+	}
+
+	public List<String> getColumnNames() {
+		return Collections.unmodifiableList(new ArrayList<>(this.columns.keySet()));
+	}
+
+	public Type getType(String column) {
+		return column(column).type;
+	}
+
+	private Column column(String name) {
+		Column column = this.columns.get(name);
+		if (column == null)
+			throw new IllegalArgumentException(String.format("Colonna inesistente: %s", name));
+		return column;
+	}
+
+	private Column column(String name, Type type) {
+		Column column = column(name);
+		if (column.type != type)
+			throw new IllegalArgumentException(String.format("La colonna %s è di tipo %s, non %s", name, column.type, type));
+		return column;
+	}
+
+	private ByteBuffer data(String name, Type type) {
+		return column(name, type).data.duplicate().order(ORDER);
+	}
+
+	public IntBuffer getInts(String column) {
+		return data(column, Type.INT32).asIntBuffer();
+	}
+
+	public LongBuffer getLongs(String column) {
+		return data(column, Type.INT64).asLongBuffer();
+	}
+
+	public DoubleBuffer getDoubles(String column) {
+		return data(column, Type.FLOAT64).asDoubleBuffer();
+	}
+
+	public ByteBuffer getChars(String column) {
+		return data(column, Type.CHAR8);
+	}
+
+	/* Indici nel dizionario della colonna, uno per riga */
+	public IntBuffer getCodes(String column) {
+		return data(column, Type.DICTIONARY).asIntBuffer();
+	}
+
+	public List<String> getDictionary(String column) {
+		return column(column, Type.DICTIONARY).dictionary;
+	}
+
+	/* Valore testuale di una riga per le colonne DICTIONARY e CHAR8 */
+	public String getString(String column, int row) {
+		Column c = column(column);
+		if (c.type == Type.DICTIONARY)
+			return c.dictionary.get(c.data.duplicate().order(ORDER).getInt(row * Integer.BYTES));
+		return String.valueOf((char) data(column, Type.CHAR8).get(row));
+	}
+
+}
@@ -0,0 +1,353 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import it.uniroma2.isw2.milestone1.entities.Metrics;
+import it.uniroma2.isw2.milestone1.utils.ColumnarDataset.Type;
+
+/*
+ * Scrive il dataset nel formato binario a colonne letto da ColumnarDataset, con le stesse righe e lo stesso ordine del csv.
+ * Ogni colonna viene accodata ad un proprio file temporaneo (Version e Name come indici nei rispettivi dizionari,
+ * gli unici tenuti in memoria); alla chiusura, quando numero di righe e offset delle colonne sono noti, vengono scritti
+ * l'intestazione e poi i file delle colonne copiati uno dopo l'altro. I file temporanei vengono cancellati alla chiusura.
+ */
+public class ColumnarDatasetWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int COLUMN_BUFFER_SIZE = 1 << 13; // buffer di scrittura di ciascun file temporaneo
+	private static final String FILE_PREFIX = "milestone1-column-";
+	private static final String FILE_SUFFIX = ".bin";
+	private static final int DESCRIPTOR_LENGTH = Short.BYTES + Byte.BYTES + 4 * Long.BYTES; // escluso il nome
+
+	private final Path path;
+	private final List<Column> columns;
+	private int rows;
+
+	private abstract static class Column {
+
+		private final byte[] name;
+		private final Type type;
+		private FileChannel file; // valori della colonna in ordine di riga, cancellato alla chiusura
+		private Output data;
+		private long dataOffset;
+		private long dictionaryOffset;
+
+		Column(String name, Type type) {
+			this.name = name.getBytes(StandardCharsets.UTF_8);
+			this.type = type;
+		}
+
+		void open() throws IOException {
+			Path temp = Files.createTempFile(FILE_PREFIX, FILE_SUFFIX);
+			try {
+				this.file = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+			} catch (IOException e) {
+				Files.deleteIfExists(temp);
+				throw e;
+			}
+			this.data = new Output(this.file, COLUMN_BUFFER_SIZE);
+		}
+
+		abstract void add(Metrics m, Output data) throws IOException;
+
+		long dictionaryLength() {
+			return 0;
+		}
+
+		void writeDictionary(Output out) throws IOException {
+			/* Solo le colonne DICTIONARY hanno un dizionario */
+		}
+
+		void close() throws IOException {
+			if (this.file != null)
+				this.file.close();
+		}
+
+	}
+
+	private static class IntColumn extends Column {
+
+		private final ToIntFunction<Metrics> getter;
+
+		IntColumn(String name, ToIntFunction<Metrics> getter) {
+			super(name, Type.INT32);
+			this.getter = getter;
+		}
+
+		@Override
+		void add(Metrics m, Output data) throws IOException {
+			data.ensure(Integer.BYTES).putInt(this.getter.applyAsInt(m));
+		}
+
+	}
+
+	private static class LongColumn extends Column {
+
+		private final ToLongFunction<Metrics> getter;
+
+		LongColumn(String name, ToLongFunction<Metrics> getter) {
+			super(name, Type.INT64);
+			this.getter = getter;
+		}
+
+		@Override
+		void add(Metrics m, Output data) throws IOException {
+			data.ensure(Long.BYTES).putLong(this.getter.applyAsLong(m));
+		}
+
+	}
+
+	private static class DoubleColumn extends Column {
+
+		private final ToDoubleFunction<Metrics> getter;
+
+		DoubleColumn(String name, ToDoubleFunction<Metrics> getter) {
+			super(name, Type.FLOAT64);
+			this.getter = getter;
+		}
+
+		@Override
+		void add(Metrics m, Output data) throws IOException {
+			data.ensure(Double.BYTES).putDouble(this.getter.applyAsDouble(m));
+		}
+
+	}
+
+	private static class CharColumn extends Column {
+
+		private final ToIntFunction<Metrics> getter;
+
+		CharColumn(String name, ToIntFunction<Metrics> getter) {
+			super(name, Type.CHAR8);
+			this.getter = getter;
+		}
+
+		@Override
+		void add(Metrics m, Output data) throws IOException {
+			data.ensure(Byte.BYTES).put((byte) this.getter.applyAsInt(m));
+		}
+
+	}
+
+	/* Indici assegnati ai valori nell'ordine di prima apparizione */
+	private static class DictionaryColumn extends Column {
+
+		private final Function<Metrics, String> getter;
+		private final Map<String, Integer> codes = new HashMap<>();
+		private final List<byte[]> dictionary = new ArrayList<>();
+		private long dictionaryLength = Integer.BYTES;
+
+		DictionaryColumn(String name, Function<Metrics, String> getter) {
+			super(name, Type.DICTIONARY);
+			this.getter = getter;
+		}
+
+		@Override
+		void add(Metrics m, Output data) throws IOException {
+			int code = this.codes.computeIfAbsent(this.getter.apply(m), value -> {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				this.dictionary.add(bytes);
+				this.dictionaryLength += Integer.BYTES + bytes.length;
+				return this.dictionary.size() - 1;
+			});
+			data.ensure(Integer.BYTES).putInt(code);
+		}
+
+		@Override
+		long dictionaryLength() {
+			return this.dictionaryLength;
+		}
+
+		@Override
+		void writeDictionary(Output out) throws IOException {
+			out.ensure(Integer.BYTES).putInt(this.dictionary.size());
+			for (byte[] value : this.dictionary) {
+				out.ensure(Integer.BYTES).putInt(value.length);
+				out.put(value);
+			}
+		}
+
+	}
+
+	/* Scrittura bufferizzata sul canale, con la posizione corrente per gli allineamenti */
+	private static class Output {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private long position;
+
+		Output(FileChannel channel, int bufferSize) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ColumnarDataset.ORDER);
+			this.position = 0;
+		}
+
+		/* Buffer con almeno 'bytes' byte liberi */
+		ByteBuffer ensure(int bytes) throws IOException {
+			if (this.buffer.remaining() < bytes)
+				flush();
+			this.position += bytes;
+			return this.buffer;
+		}
+
+		void put(byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				int length = Math.min(bytes.length - offset, this.buffer.capacity());
+				ensure(length).put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		void padTo(long offset) throws IOException {
+			while (this.position < offset)
+				ensure(Byte.BYTES).put((byte) 0);
+		}
+
+		/* Accoda tutto quanto scritto finora in un'altra Output, dall'inizio del canale */
+		void copyTo(Output out) throws IOException {
+			flush();
+			out.flush();
+			long copied = 0;
+			while (copied < this.position)
+				copied += this.channel.transferTo(copied, this.position - copied, out.channel);
+			out.position += this.position;
+		}
+
+		void flush() throws IOException {
+			this.buffer.flip();
+			while (this.buffer.hasRemaining())
+				this.channel.write(this.buffer);
+			this.buffer.clear();
+		}
+
+	}
+
+	public ColumnarDatasetWriter(Path path) throws IOException {
+		this.path = path;
+		this.columns = Arrays.asList(
+				new IntColumn("VersionId", m -> m.getVersion().getId()),
+				new DictionaryColumn("Version", m -> m.getVersion().getName()),
+				new DictionaryColumn("Name", Metrics::getName),
+				new IntColumn("Size", Metrics::getSize),
+				new IntColumn("NRev", Metrics::getNumberOfRevisions),
+				new IntColumn("NAuth", Metrics::getNumberOfAuthors),
+				new IntColumn("LOC added", Metrics::getLOCAdded),
+				new IntColumn("MAX LOC added", Metrics::getMaxLOCAdded),
+				new DoubleColumn("AVG LOC added", Metrics::getAverageLOCAdded),
+				new IntColumn("Churn", Metrics::getChurn),
+				new IntColumn("MAX Churn", Metrics::getMaxChurn),
+				new DoubleColumn("AVG Churn", Metrics::getAverageChurn),
+				new IntColumn("ChgSetSize", Metrics::getChangeSetSize),
+				new LongColumn("Age", Metrics::getAge),
+				new CharColumn("Buggyness", Metrics::getBuggyness));
+		this.rows = 0;
+
+		try {
+			for (Column c : this.columns)
+				c.open();
+		} catch (IOException e) {
+			closeColumns();
+			throw e;
+		}
+	}
+
+	public void add(Metrics m) throws IOException {
+		for (Column c : this.columns)
+			c.add(m, c.data);
+		this.rows++;
+	}
+
+	public int getRows() {
+		return this.rows;
+	}
+
+	private static long align(long offset) {
+		return (offset + ColumnarDataset.ALIGNMENT - 1) / ColumnarDataset.ALIGNMENT * ColumnarDataset.ALIGNMENT;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			writeDataset();
+		} finally {
+			closeColumns();
+		}
+	}
+
+	private void writeDataset() throws IOException {
+		int headerLength = ColumnarDataset.PREFIX_LENGTH;
+		for (Column c : this.columns)
+			headerLength += DESCRIPTOR_LENGTH + c.name.length;
+
+		long offset = align(headerLength);
+		for (Column c : this.columns) {
+			c.dataOffset = offset;
+			offset = align(offset + (long) this.rows * c.type.getWidth());
+			c.dictionaryOffset = (c.dictionaryLength() > 0) ? offset : 0;
+			offset = align(offset + c.dictionaryLength());
+		}
+
+		try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output out = new Output(channel, BUFFER_SIZE);
+			out.ensure(ColumnarDataset.PREFIX_LENGTH).putInt(ColumnarDataset.MAGIC)
+				.putInt(ColumnarDataset.FORMAT_VERSION)
+				.putInt(this.rows)
+				.putInt(this.columns.size())
+				.putInt(headerLength);
+			for (Column c : this.columns) {
+				out.ensure(Short.BYTES).putShort((short) c.name.length);
+				out.put(c.name);
+				out.ensure(DESCRIPTOR_LENGTH - Short.BYTES).put(c.type.getCode())
+					.putLong(c.dataOffset)
+					.putLong((long) this.rows * c.type.getWidth())
+					.putLong(c.dictionaryOffset)
+					.putLong(c.dictionaryLength());
+			}
+
+			for (Column c : this.columns) {
+				out.padTo(c.dataOffset);
+				c.data.copyTo(out);
+				if (c.dictionaryLength() > 0) {
+					out.padTo(c.dictionaryOffset);
+					c.writeDictionary(out);
+				}
+			}
+			out.flush();
+		}
+	}
+
+	/* Chiude (e quindi cancella) i file temporanei delle colonne, anche dopo un errore */
+	private void closeColumns() throws IOException {
+		IOException failure = null;
+		for (Column c : this.columns) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				if (failure == null)
+					failure = e;
+				else
+					failure.addSuppressed(e);
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+}
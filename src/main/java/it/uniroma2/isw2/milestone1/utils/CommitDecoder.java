@@ -0,0 +1,136 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Diff;
+
+/*
+ * Decodifica in streaming la risposta di Github per un singolo commit: legge soltanto autore, data,
+ * messaggio e nome/righe aggiunte/righe rimosse dei file java, saltando tutto il resto (patch comprese)
+ * senza costruire oggetti intermedi
+ */
+public class CommitDecoder {
+
+	private static final String JAVA_EXTENSION = ".java";
+
+	private CommitDecoder() {
+
+	}
+
+	/* Percorsi e autori vengono convertiti subito in id dei dizionari di progetto */
+	public static Commit decode(JsonReader reader, String sha, SymbolTable paths, SymbolTable authors) throws IOException {
+		Commit c = new Commit();
+		c.setSha(sha);
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "commit":
+				readCommit(reader, c, authors);
+				break;
+			case "files":
+				readFiles(reader, c, paths);
+				break;
+			default:
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		completeFileIds(c);
+		return c;
+	}
+
+	/* Id distinti dei file modificati, calcolati dopo aver aggiunto tutti i diff */
+	static void completeFileIds(Commit c) {
+		c.setFileIds(c.getDiffs().stream().mapToInt(Diff::getFileId).distinct().toArray());
+	}
+
+	/* Se è un file java, aggiunge nome, righe aggiunte e righe rimosse alla lista dei file modificati dal commit */
+	static void addJavaDiff(Commit c, String filename, int additions, int deletions, SymbolTable paths) {
+		if (filename != null && filename.endsWith(JAVA_EXTENSION)) {
+			Diff d = new Diff();
+			d.setFileId(paths.intern(filename));
+			d.setAddedLines(additions);
+			d.setDeletedLines(deletions);
+			c.addDiff(d);
+		}
+	}
+
+	private static void readCommit(JsonReader reader, Commit c, SymbolTable authors) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "author":
+				readAuthor(reader, c, authors);
+				break;
+			case "message":
+				c.setMessage(reader.nextString());
+				break;
+			default:
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void readAuthor(JsonReader reader, Commit c, SymbolTable authors) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "name":
+				c.setAuthorId(authors.intern(reader.nextString()));
+				break;
+			case "date":
+				c.setDate(reader.nextString());
+				break;
+			default:
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void readFiles(JsonReader reader, Commit c, SymbolTable paths) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return;
+		}
+
+		reader.beginArray();
+		while (reader.hasNext())
+			readFile(reader, c, paths);
+		reader.endArray();
+	}
+
+	private static void readFile(JsonReader reader, Commit c, SymbolTable paths) throws IOException {
+		String filename = null;
+		int additions = 0;
+		int deletions = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "filename":
+				filename = reader.nextString();
+				break;
+			case "additions":
+				additions = reader.nextInt();
+				break;
+			case "deletions":
+				deletions = reader.nextInt();
+				break;
+			default:
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		addJavaDiff(c, filename, additions, deletions, paths);
+	}
+
+}
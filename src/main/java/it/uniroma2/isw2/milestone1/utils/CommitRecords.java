@@ -0,0 +1,99 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Diff;
+
+/*
+ * Formato ridotto dei record in cache: invece del corpo completo delle risposte di Github
+ * (patch, url, utenti, file non java) si conservano soltanto i campi usati dal dataset.
+ * - commit: [versione][autore][data][lunghezza messaggio][messaggio][numero diff] e per ogni diff java [percorso][righe aggiunte][righe rimosse]
+ * - pagine della lista dei commit: per ogni commit soltanto sha e data dell'autore, con la stessa struttura json di Github
+ */
+public class CommitRecords {
+
+	private static final byte RECORD_VERSION = 1;
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+	private CommitRecords() {
+
+	}
+
+	/* Autore e percorsi vengono risolti con i dizionari in cui il commit è stato decodificato */
+	public static byte[] encode(Commit c, SymbolTable paths, SymbolTable authors) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(RECORD_VERSION);
+			out.writeUTF(authors.lookup(c.getAuthorId()));
+			out.writeUTF(DATE_FORMAT.format(c.getDate().atOffset(ZoneOffset.UTC))); // le date dei commit sono in UTC
+			byte[] message = (c.getMessage() == null) ? new byte[0] : c.getMessage().getBytes(StandardCharsets.UTF_8);
+			out.writeInt(message.length);
+			out.write(message);
+			out.writeInt(c.getDiffs().size());
+			for (Diff d : c.getDiffs()) {
+				out.writeUTF(paths.lookup(d.getFileId()));
+				out.writeInt(d.getAddedLines());
+				out.writeInt(d.getDeletedLines());
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/* Autore e percorsi vengono registrati nei dizionari nello stesso ordine della decodifica della risposta completa */
+	public static Commit decode(InputStream body, String sha, SymbolTable paths, SymbolTable authors) throws IOException {
+		try (DataInputStream in = new DataInputStream(body)) {
+			byte version = in.readByte();
+			if (version != RECORD_VERSION)
+				throw new IOException(String.format("Versione del record %d non supportata per il commit %s", version, sha));
+
+			Commit c = new Commit();
+			c.setSha(sha);
+			c.setAuthorId(authors.intern(in.readUTF()));
+			c.setDate(in.readUTF());
+			byte[] message = new byte[in.readInt()];
+			in.readFully(message);
+			c.setMessage(new String(message, StandardCharsets.UTF_8));
+
+			int diffs = in.readInt();
+			for (int i = 0; i < diffs; i++)
+				CommitDecoder.addJavaDiff(c, in.readUTF(), in.readInt(), in.readInt(), paths);
+			CommitDecoder.completeFileIds(c);
+			return c;
+		}
+	}
+
+	/* Pagina della lista dei commit con soltanto sha e commit.author.date */
+	public static JsonArray projectListPage(JsonArray page) {
+		JsonArray projected = new JsonArray();
+		for (JsonElement element : page) {
+			JsonObject entry = element.getAsJsonObject();
+			JsonObject slim = new JsonObject();
+			slim.add("sha", entry.get("sha"));
+
+			JsonObject commit = entry.getAsJsonObject("commit");
+			JsonObject author = (commit == null) ? null : commit.getAsJsonObject("author");
+			if (author != null && author.has("date")) {
+				JsonObject slimAuthor = new JsonObject();
+				slimAuthor.add("date", author.get("date"));
+				JsonObject slimCommit = new JsonObject();
+				slimCommit.add("author", slimAuthor);
+				slim.add("commit", slimCommit);
+			}
+			projected.add(slim);
+		}
+		return projected;
+	}
+
+}
@@ -0,0 +1,56 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.exceptions.GithubOwnerException;
+import it.uniroma2.isw2.milestone1.exceptions.GithubTokenException;
+import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
+
+/*
+ * Sorgente della storia dei commit di un progetto: API di Github (GitHelper) o clone locale (LocalGitHelper).
+ * I commit sono restituiti dal più vecchio al più recente, con autori e percorsi registrati nei dizionari di progetto.
+ */
+public interface CommitSource extends Closeable {
+
+	String GITHUB = "github";
+	String LOCAL = "local";
+
+	/* Destinazione dei commit recuperati in streaming, nell'ordine della storia */
+	@FunctionalInterface
+	interface Sink {
+
+		void accept(Commit commit) throws IOException;
+
+	}
+
+	/* Tutti i commit fino al primo successivo alla data specificata (escluso) */
+	List<Commit> retrieveCommits(LocalDateTime targetDate) throws IOException, RateLimitExceededGithubAPIException;
+
+	/* Stessi commit di retrieveCommits, consegnati uno alla volta appena recuperati; di default dopo averli letti tutti */
+	default void retrieveCommits(LocalDateTime targetDate, Sink sink) throws IOException, RateLimitExceededGithubAPIException {
+		for (Commit c : retrieveCommits(targetDate))
+			sink.accept(c);
+	}
+
+	/* Pool condiviso per le sorgenti che recuperano i commit in parallelo */
+	default void setExecutor(ExecutorService executor) {
+	}
+
+	/* Sorgente scelta con milestone1.commits.source */
+	static CommitSource forProject(String projectName, SymbolTable paths, SymbolTable authors) throws GithubTokenException, GithubOwnerException {
+		String source = Settings.commitSource();
+		if (LOCAL.equals(source))
+			return new LocalGitHelper(Paths.get(Settings.gitRepositories(), projectName.toLowerCase(Locale.ROOT)), paths, authors);
+		if (GITHUB.equals(source))
+			return new GitHelper(projectName, paths, authors);
+		throw new IllegalArgumentException(String.format("Sorgente dei commit sconosciuta: %s", source));
+	}
+
+}
@@ -0,0 +1,116 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
+
+/*
+ * Coda limitata tra il recupero dei commit (produttore, su un thread dedicato) e chi li elabora (consumatore):
+ * il produttore si blocca quando la coda è piena, così restano in memoria al più 'capacity' commit non ancora consumati
+ * e il recupero prosegue mentre il consumatore lavora sui commit già arrivati.
+ * La sorgente viene chiusa dal produttore al termine del recupero.
+ */
+public class CommitStream implements Closeable {
+
+	private static final Commit END = new Commit(); // segnala la fine della storia
+	private static final long JOIN_MILLIS = 100;
+
+	private final CommitSource source;
+	private final LocalDateTime targetDate;
+	private final BlockingQueue<Commit> queue;
+	private final Thread producer;
+	private volatile Throwable failure; // errore del produttore, anche non controllato (ad esempio OutOfMemoryError)
+	private volatile boolean closed;
+	private boolean ended;
+
+	public CommitStream(CommitSource source, LocalDateTime targetDate, int capacity, String name) {
+		this.source = source;
+		this.targetDate = targetDate;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+		this.producer = new Thread(this::produce, name);
+		this.producer.setDaemon(true);
+	}
+
+	public void start() {
+		this.producer.start();
+	}
+
+	private void produce() {
+		try (CommitSource s = this.source) {
+			s.retrieveCommits(this.targetDate, this::put);
+		} catch (Throwable e) {
+			this.failure = e; // la fine della coda non deve sembrare la fine della storia
+		} finally {
+			try {
+				if (!this.closed)
+					this.queue.put(END);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); // il consumatore ha chiuso lo stream
+			}
+		}
+	}
+
+	private void put(Commit commit) throws IOException {
+		try {
+			if (this.closed)
+				throw new InterruptedIOException("Stream dei commit chiuso");
+			this.queue.put(commit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Recupero dei commit interrotto");
+		}
+	}
+
+	/* Prossimo commit, dal più vecchio al più recente; null a fine storia. Gli errori del recupero vengono rilanciati qui */
+	public Commit next() throws IOException, RateLimitExceededGithubAPIException {
+		if (this.ended)
+			return null;
+
+		Commit commit;
+		try {
+			commit = this.queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Attesa dei commit interrotta");
+		}
+		if (commit != END)
+			return commit;
+
+		this.ended = true;
+		Throwable e = this.failure;
+		if (e instanceof IOException)
+			throw (IOException) e;
+		if (e instanceof RateLimitExceededGithubAPIException)
+			throw (RateLimitExceededGithubAPIException) e;
+		if (e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		if (e != null)
+			throw new IOException(String.format("Recupero dei commit interrotto da un errore: %s", e), e);
+		return null;
+	}
+
+	/* Interrompe il recupero se il consumatore termina prima della fine della storia */
+	@Override
+	public void close() throws IOException {
+		this.closed = true;
+		this.producer.interrupt();
+		try {
+			while (this.producer.isAlive()) {
+				this.queue.clear(); // sblocca un produttore in attesa di spazio
+				this.producer.join(JOIN_MILLIS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Chiusura dello stream dei commit interrotta");
+		}
+		this.queue.clear();
+	}
+
+}
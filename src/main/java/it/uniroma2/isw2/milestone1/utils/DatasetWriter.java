@@ -0,0 +1,177 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import it.uniroma2.isw2.milestone1.entities.Metrics;
+
+/*
+ * Scrive il dataset in csv e arff una release alla volta, man mano che le release vengono completate.
+ * Ogni riga viene formattata una sola volta in un buffer riutilizzato, codificata e scritta su entrambi i file,
+ * e se richiesto accodata anche al dataset binario a colonne (vedi ColumnarDatasetWriter).
+ * Le release con la stessa data di rilascio vengono accorpate e ordinate insieme per nome del file,
+ * come faceva l'ordinamento globale per data e nome.
+ */
+public class DatasetWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final OutputStream csv;
+	private final OutputStream arff;
+	private final ColumnarDatasetWriter columnar; // null se il formato a colonne non è richiesto
+	private final CharsetEncoder encoder;
+	private final StringBuilder row;
+	private final String lineSeparator;
+	private final char decimalSeparator;
+	private final boolean asciiDigits;
+	private ByteBuffer encoded;
+
+	private final List<Metrics> pending;
+	private LocalDateTime pendingDate;
+	private long rows;
+
+	public DatasetWriter(Path csvPath, Path arffPath, String projectName) throws IOException {
+		this(csvPath, arffPath, null, projectName);
+	}
+
+	public DatasetWriter(Path csvPath, Path arffPath, Path columnarPath, String projectName) throws IOException {
+		/* Stesse impostazioni di FileWriter e String.format: charset e locale di default */
+		this.encoder = Charset.defaultCharset().newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+		this.decimalSeparator = symbols.getDecimalSeparator();
+		this.asciiDigits = symbols.getZeroDigit() == '0';
+		this.lineSeparator = System.lineSeparator();
+		this.row = new StringBuilder(256);
+		this.encoded = ByteBuffer.allocate(1024);
+
+		this.pending = new ArrayList<>();
+		this.rows = 0;
+
+		/* Se un'apertura fallisce i file già aperti vengono chiusi (i temporanei delle colonne anche cancellati) */
+		List<Closeable> opened = new ArrayList<>();
+		try {
+			this.csv = open(opened, new BufferedOutputStream(Files.newOutputStream(csvPath), BUFFER_SIZE));
+			this.arff = open(opened, new BufferedOutputStream(Files.newOutputStream(arffPath), BUFFER_SIZE));
+			this.columnar = (columnarPath != null) ? open(opened, new ColumnarDatasetWriter(columnarPath)) : null;
+
+			write(this.csv, Metrics.CSV_HEADER);
+			write(this.arff, String.format(Metrics.ARFF_HEADER_FORMAT, projectName));
+		} catch (IOException | RuntimeException e) {
+			for (Closeable c : opened) {
+				try {
+					c.close();
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+			}
+			throw e;
+		}
+	}
+
+	private static <T extends Closeable> T open(List<Closeable> opened, T resource) {
+		opened.add(resource);
+		return resource;
+	}
+
+	/* Righe di una release completata (in qualsiasi ordine) */
+	public void writeRelease(List<Metrics> release) throws IOException {
+		if (release.isEmpty())
+			return;
+
+		LocalDateTime date = release.get(0).getVersion().getReleaseDate();
+		if (this.pendingDate != null && !this.pendingDate.equals(date))
+			flushPending();
+
+		this.pendingDate = date;
+		this.pending.addAll(release);
+	}
+
+	public long getRows() {
+		return this.rows;
+	}
+
+	private void flushPending() throws IOException {
+		/* Ordinamento stabile: a parità di nome resta l'ordine delle release */
+		this.pending.sort(Comparator.comparing(Metrics::getName));
+		for (Metrics m : this.pending)
+			writeRow(m);
+		this.pending.clear();
+		this.pendingDate = null;
+	}
+
+	private void writeRow(Metrics m) throws IOException {
+		this.row.setLength(0);
+		if (this.asciiDigits)
+			m.appendTo(this.row, this.decimalSeparator);
+		else
+			this.row.append(m);
+		this.row.append(this.lineSeparator);
+
+		ByteBuffer bytes = encode(this.row);
+		this.csv.write(bytes.array(), 0, bytes.limit());
+		this.arff.write(bytes.array(), 0, bytes.limit());
+		if (this.columnar != null)
+			this.columnar.add(m);
+		this.rows++;
+	}
+
+	private ByteBuffer encode(CharSequence text) throws IOException {
+		while (true) {
+			CharBuffer in = CharBuffer.wrap(text);
+			this.encoder.reset();
+			this.encoded.clear();
+			CoderResult result = this.encoder.encode(in, this.encoded, true);
+			if (!result.isOverflow())
+				result = this.encoder.flush(this.encoded);
+			if (!result.isOverflow()) {
+				if (result.isError())
+					result.throwException();
+				this.encoded.flip();
+				return this.encoded;
+			}
+			this.encoded = ByteBuffer.allocate(this.encoded.capacity() * 2);
+		}
+	}
+
+	private void write(OutputStream out, String text) throws IOException {
+		ByteBuffer bytes = encode(text);
+		out.write(bytes.array(), 0, bytes.limit());
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flushPending();
+		} finally {
+			try {
+				this.csv.close();
+			} finally {
+				try {
+					this.arff.close();
+				} finally {
+					if (this.columnar != null)
+						this.columnar.close();
+				}
+			}
+		}
+	}
+
+}
@@ -3,38 +3,97 @@ package it.uniroma2.isw2.milestone1.utils;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import it.uniroma2.isw2.milestone1.entities.Commit;
-import it.uniroma2.isw2.milestone1.entities.Diff;
 import it.uniroma2.isw2.milestone1.exceptions.GithubOwnerException;
 import it.uniroma2.isw2.milestone1.exceptions.GithubTokenException;
 import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
 
-public class GitHelper {
+public class GitHelper implements CommitSource {
+
+	private static final Logger LOGGER = Logger.getLogger(GitHelper.class.getName());
 
 	private static final String REPO_OWNER_PATH = "owner.dat"; // proprietario del repository github
-	private static final String TOKEN_GITHUB_PATH = "token.key"; // token github 
-	private static final String CACHE_COMMIT_LIST = ".cache/commit-list/%s/%s.json"; // percorso dei file di cache per gli hash dei commit
-	private static final String CACHE_COMMIT_INFO = ".cache/commit-info/%s/%s.json"; // percorso dei file contenenti le informazioni dei commit
-	private static final String REMOTE_COMMIT_LIST = "https://api.github.com/repos/%s/%s/commits?per_page=100&page=%d"; // API per l'ottenimento degli hash dei commit
-	private static final String REMOTE_COMMIT_INFO = "https://api.github.com/repos/%s/%s/commits/%s"; // API per l'ottenimento dell'informazioni di un commit dato il suo hash
+	private static final String TOKEN_GITHUB_PATH = "token.key"; // token github, uno per riga (le righe vuote o che iniziano con # vengono ignorate)
+	static final String CACHE_PACK = ".cache/packed/%s.pack"; // segmento unico che contiene tutte le risposte di Github in cache
+	private static final String LEGACY_CACHE_COMMIT_LIST = ".cache/commit-list/%s"; // vecchia cache, un file per pagina di hash dei commit
+	private static final String LEGACY_CACHE_COMMIT_INFO = ".cache/commit-info/%s"; // vecchia cache, un file per commit
+	static final String KEY_COMMIT_LIST = "commit-list/"; // prefisso delle chiavi per le pagine complete della lista dei commit (formato precedente)
+	static final String KEY_COMMIT_PAGE = "commit-page/"; // prefisso delle chiavi per le pagine ridotte della lista dei commit
+	static final String KEY_COMMIT_PAGE_UNTIL = "commit-page-until/"; // prefisso delle chiavi per le pagine ridotte della lista limitata ad una data (<until>/<pagina>)
+	static final String KEY_COMMIT_INFO = "commit-info/"; // prefisso delle chiavi per le risposte complete dei commit (formato precedente)
+	static final String KEY_COMMIT_RECORD = "commit-record/"; // prefisso delle chiavi per i record ridotti dei commit
+	private static final String REMOTE_API = "https://api.github.com"; // radice delle REST API di Github
+	private static final String REMOTE_COMMIT_LIST = "%s/repos/%s/%s/commits?per_page=100&page=%d"; // API per l'ottenimento degli hash dei commit
+	private static final String REMOTE_UNTIL = "&until=%s"; // soltanto i commit con data (del committer) non successiva
+	private static final int PAGE_SIZE = 100; // commit per pagina della lista: una pagina più corta è l'ultima
+	private static final int UNTIL_MARGIN_DAYS = 30; // margine per i commit con data dell'autore precedente a quella del committer
+	private static final int UNTIL_SETTLED_DAYS = 7; // età minima di until perché le pagine limitate alla data possano essere salvate in cache
+	private static final String CACHE_PAGES = "github_pages"; // etichette delle letture dalla cache nelle metriche
+	private static final String CACHE_COMMITS = "github_commits";
+	private static final String RESULT_HIT = "hit";
+	private static final String RESULT_MISS = "miss";
+	private static final String REMOTE_COMMIT_INFO = "%s/repos/%s/%s/commits/%s"; // API per l'ottenimento dell'informazioni di un commit dato il suo hash
 
-	private String token;
+	private GithubTokenPool tokens;
 	private String repoOwner;
 	private String projectName;
+	private String apiUrl;
+	private Path packPath;
+	private int parallelism;
+	private ExecutorService executor; // pool condiviso tra più progetti (null: pool dedicato ad ogni recupero)
+	private PackedCache cache;
+	private SymbolTable paths;
+	private SymbolTable authors;
 	
-	public GitHelper(String projectName) throws GithubTokenException, GithubOwnerException {
-		this.projectName = projectName.toLowerCase();
+	/* paths, authors: dizionari di progetto in cui registrare percorsi dei file e autori dei commit */
+	public GitHelper(String projectName, SymbolTable paths, SymbolTable authors) throws GithubTokenException, GithubOwnerException {
+		this.projectName = projectName.toLowerCase(Locale.ROOT);
+		this.apiUrl = REMOTE_API;
+		this.packPath = Paths.get(String.format(CACHE_PACK, this.projectName));
+		this.paths = paths;
+		this.authors = authors;
+		this.parallelism = Settings.fetchParallelism();
 		readCredentials(); // Recupera le credenziali dalla cartella locale per l'utilizzo delle API di Github
 	}
 
+	/* Credenziali, API e cache indicate esplicitamente (test) */
+	GitHelper(String projectName, String repoOwner, GithubTokenPool tokens, String apiUrl, Path packPath, SymbolTable paths, SymbolTable authors) {
+		this.projectName = projectName.toLowerCase(Locale.ROOT);
+		this.repoOwner = repoOwner;
+		this.tokens = tokens;
+		this.apiUrl = apiUrl;
+		this.packPath = packPath;
+		this.paths = paths;
+		this.authors = authors;
+		this.parallelism = Settings.fetchParallelism();
+	}
+
 	private void readCredentials() throws GithubTokenException, GithubOwnerException {
 		readOwnerGithubFromLocalFile();
 		readTokenGithubFromLocalFile();
@@ -49,17 +108,81 @@ public class GitHelper {
 	}
 	
 	private void readTokenGithubFromLocalFile() throws GithubTokenException {
+		List<String> tokenList = new ArrayList<>();
 		try (BufferedReader reader = new BufferedReader(new FileReader(TOKEN_GITHUB_PATH))) {
-			this.token = reader.readLine();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#"))
+					tokenList.add(line);
+			}
 		} catch (IOException e) {
 			throw new GithubTokenException();
 		}
+		
+		if (tokenList.isEmpty())
+			throw new GithubTokenException();
+		this.tokens = GithubTokenPool.shared(tokenList);
+		LOGGER.log(Level.INFO, "Letti {0} token Github", this.tokens.size());
+	}
+
+	/* Apre la cache alla prima richiesta; se è nuova, importa una sola volta le vecchie cartelle di cache nel formato ridotto */
+	private PackedCache openCache() throws IOException {
+		if (this.cache == null) {
+			boolean exists = Files.exists(this.packPath);
+			this.cache = new PackedCache(this.packPath);
+			if (!exists) {
+				int imported = this.cache.importDirectory(Paths.get(String.format(LEGACY_CACHE_COMMIT_LIST, this.projectName)), KEY_COMMIT_LIST)
+						+ this.cache.importDirectory(Paths.get(String.format(LEGACY_CACHE_COMMIT_INFO, this.projectName)), KEY_COMMIT_INFO);
+				LOGGER.log(Level.INFO, "Importate {0} risposte dalla vecchia cache in {1}", new Object[] { imported, this.packPath });
+				if (imported > 0) { // le risposte importate vengono subito ridotte
+					this.cache.close();
+					CacheMigrator.migrate(this.packPath);
+					this.cache = new PackedCache(this.packPath);
+				}
+			}
+		}
+		return this.cache;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.cache != null) {
+			this.cache.close();
+			this.cache = null;
+		}
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/* Il pool condiviso non viene chiuso dal GitHelper */
+	@Override
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
 	}
 
 	/* Recupera tutti i commits fino ad una data specificata */
+	@Override
 	public List<Commit> retrieveCommits(LocalDateTime targetDate) throws IOException, RateLimitExceededGithubAPIException {
 		List<Commit> commits = new ArrayList<>();
-		Iterator<String> shas = retrieveCommitsSHA().iterator();
+		retrieveCommits(targetDate, commits::add);
+		return commits;
+	}
+
+	@Override
+	public void retrieveCommits(LocalDateTime targetDate, Sink sink) throws IOException, RateLimitExceededGithubAPIException {
+		openCache();
+		List<String> shas = retrieveCommitsSHA(targetDate);
+		if (this.parallelism > 1)
+			retrieveCommitsConcurrently(shas, targetDate, sink);
+		else
+			retrieveCommitsSerially(shas, targetDate, sink);
+	}
+
+	private void retrieveCommitsSerially(List<String> shaList, LocalDateTime targetDate, Sink sink) throws IOException, RateLimitExceededGithubAPIException {
+		Iterator<String> shas = shaList.iterator();
 		boolean targetDateReached = false;
 
 		while(shas.hasNext() && !targetDateReached) {
@@ -67,72 +190,175 @@ public class GitHelper {
 			if (c.getDate().isAfter(targetDate))
 				targetDateReached = true;
 			else
-				commits.add(c);
+				sink.accept(c);
 		}
+	}
 
-		return commits;
+	/* 
+	 * Mantiene al più 'parallelism' richieste in volo e consuma i risultati nell'ordine degli SHA:
+	 * il primo commit successivo alla data target interrompe il recupero come nel caso seriale.
+	 * Ogni richiesta tiene il lock in lettura mentre è in corso: al termine del recupero (anche per errore o chiusura
+	 * dello stream) le richieste non ancora partite vengono annullate e quelle già partite attese, perché scrivono
+	 * nella cache che close() chiude subito dopo
+	 */
+	private void retrieveCommitsConcurrently(List<String> shas, LocalDateTime targetDate, Sink sink) throws IOException, RateLimitExceededGithubAPIException {
+		Deque<Future<Commit>> inFlight = new ArrayDeque<>();
+		ExecutorService executor = (this.executor != null) ? this.executor : Executors.newFixedThreadPool(this.parallelism);
+		ReadWriteLock running = new ReentrantReadWriteLock();
+		int next = 0;
+
+		try {
+			while (next < shas.size() && inFlight.size() < this.parallelism)
+				inFlight.add(submitRetrieve(executor, running.readLock(), shas.get(next++)));
+
+			while (!inFlight.isEmpty()) {
+				Commit c = awaitCommit(inFlight.poll());
+				if (c.getDate().isAfter(targetDate))
+					break;
+				if (next < shas.size()) // la richiesta successiva parte prima che il commit venga consegnato
+					inFlight.add(submitRetrieve(executor, running.readLock(), shas.get(next++)));
+				sink.accept(c);
+			}
+		} finally {
+			inFlight.forEach(f -> f.cancel(false));
+			running.writeLock().lock(); // non viene rilasciato: le richieste che partono dopo non fanno nulla
+			if (executor != this.executor)
+				executor.shutdown();
+		}
+	}
+
+	/* null se il recupero è già terminato quando la richiesta parte */
+	private Future<Commit> submitRetrieve(ExecutorService executor, Lock running, String sha) {
+		return executor.submit(() -> {
+			if (!running.tryLock())
+				return null;
+			try {
+				return retrieveCommitBySHA(sha);
+			} finally {
+				running.unlock();
+			}
+		});
+	}
+
+	private Commit awaitCommit(Future<Commit> future) throws IOException, RateLimitExceededGithubAPIException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Recupero dei commit interrotto", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RateLimitExceededGithubAPIException)
+				throw (RateLimitExceededGithubAPIException) cause;
+			throw new IOException(cause);
+		}
 	}
 	
-	/* Recupera tutti gli SHA dei commit */
-	private List<String> retrieveCommitsSHA() throws IOException {
+	/*
+	 * Recupera gli SHA dei commit dal più vecchio fino al primo successivo alla data target (escluso), usando la data
+	 * dell'autore riportata nella lista, così che i dettagli dei commit successivi non vengano mai richiesti.
+	 * Se la cache contiene già la lista completa la si usa, altrimenti le pagine vengono richieste con until
+	 * (data del committer, con un margine), per non scaricare la parte di storia successiva alla data target
+	 */
+	private List<String> retrieveCommitsSHA(LocalDateTime targetDate) throws IOException, RateLimitExceededGithubAPIException {
 		
-		List<String> commits = new ArrayList<>();
+		String until = null;
+		boolean cacheable = true;
+		if (!this.cache.contains(KEY_COMMIT_PAGE + 1) && !this.cache.contains(KEY_COMMIT_LIST + 1)) {
+			LocalDateTime untilDate = targetDate.plusDays(UNTIL_MARGIN_DAYS);
+			until = DateTimeFormatter.ISO_INSTANT.format(untilDate.toInstant(ZoneOffset.UTC));
+			cacheable = untilDate.isBefore(LocalDateTime.now(ZoneOffset.UTC).minusDays(UNTIL_SETTLED_DAYS));
+		}
 		
+		/* Le pagine partono dal commit più recente */
+		List<JsonObject> entries = new ArrayList<>();
 		int index = 1;
 		int results = 0;
 		do {
-			String cache = String.format(CACHE_COMMIT_LIST, this.projectName, index);
-			String remote = String.format(REMOTE_COMMIT_LIST, this.repoOwner, this.projectName, index);
-						
-			JsonArray jsonCommits = RestHelper.getJSONArray(remote, this.token, cache);
+			JsonArray jsonCommits = retrieveCommitsPage(index, until, cacheable);
 			results = jsonCommits.size();
-			
-			jsonCommits.forEach(element -> {
-				JsonObject jsonCommit = element.getAsJsonObject();
-				String sha = jsonCommit.get("sha").getAsString();
-				commits.add(0, sha);
-			});
+			jsonCommits.forEach(element -> entries.add(element.getAsJsonObject()));
 			index++;
 			
-		} while(results > 0);
+		} while(results == PAGE_SIZE);
 
+		List<String> commits = new ArrayList<>(entries.size());
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			JsonObject jsonCommit = entries.get(i);
+			LocalDateTime date = listedDate(jsonCommit);
+			if (date != null && date.isAfter(targetDate))
+				break;
+			commits.add(jsonCommit.get("sha").getAsString());
+		}
+		LOGGER.log(Level.INFO, "Elencati {0} commit, {1} fino alla data target", new Object[] { entries.size(), commits.size() });
 		return commits;
 	}
 	
-	/* Recupera un commit in base al suo SHA */
-	private Commit retrieveCommitBySHA(String sha) throws IOException, RateLimitExceededGithubAPIException {
+	/* Data dell'autore riportata nella lista (null se assente: il confronto avviene sul dettaglio del commit) */
+	private static LocalDateTime listedDate(JsonObject jsonCommit) {
+		JsonObject commit = jsonCommit.getAsJsonObject("commit");
+		JsonObject author = (commit == null) ? null : commit.getAsJsonObject("author");
+		if (author == null || !author.has("date") || author.get("date").isJsonNull())
+			return null;
+		return LocalDateTime.parse(author.get("date").getAsString(), DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+	}
+	
+	/*
+	 * until: null per la lista completa. Le pagine della lista limitata ad una data ormai passata non cambiano e vengono
+	 * salvate anche se vuote; con until recente o futuro (cacheable false) nella finestra possono ancora entrare nuovi commit
+	 * e le pagine vengono sempre richieste a Github, senza salvarle
+	 */
+	private JsonArray retrieveCommitsPage(int index, String until, boolean cacheable) throws IOException, RateLimitExceededGithubAPIException {
+		String key = (until == null) ? KEY_COMMIT_PAGE + index : KEY_COMMIT_PAGE_UNTIL + until + "/" + index;
+		if (cacheable) {
+			String cached = this.cache.get(key);
+			if (cached == null && until == null)
+				cached = this.cache.get(KEY_COMMIT_LIST + index); // pagina completa non ancora migrata
+			if (cached != null) {
+				countLookup(CACHE_PAGES, RESULT_HIT);
+				return JsonParser.parseString(cached).getAsJsonArray();
+			}
+			countLookup(CACHE_PAGES, RESULT_MISS);
+		}
 		
-		String cache = String.format(CACHE_COMMIT_INFO, this.projectName, sha);
-		String remote = String.format(REMOTE_COMMIT_INFO, this.repoOwner, this.projectName, sha);
-				
-		// Recupera il commit in base allo SHA specificato e prende le informazioni relative al commit e all'autore del commit stesso
-		JsonObject jsonResponse = RestHelper.getJSONObject(remote, this.token, cache);
-		JsonObject jsonCommit = jsonResponse.get("commit").getAsJsonObject();
-		JsonObject jsonAuthor = jsonCommit.get("author").getAsJsonObject();
+		String remote = String.format(REMOTE_COMMIT_LIST, this.apiUrl, this.repoOwner, this.projectName, index);
+		if (until != null)
+			remote += String.format(REMOTE_UNTIL, until);
+		JsonArray page = CommitRecords.projectListPage(RestHelper.getJSONArray(remote, this.tokens));
+		if (cacheable && (page.size() > 0 || until != null))
+			this.cache.put(key, page.toString());
+		return page;
+	}
+	
+	/*
+	 * Recupera un commit in base al suo SHA: dal record ridotto in cache, dalla risposta completa salvata dalle versioni
+	 * precedenti (vedi CacheMigration) oppure da Github, decodificando in streaming solo i campi utilizzati
+	 */
+	private Commit retrieveCommitBySHA(String sha) throws IOException, RateLimitExceededGithubAPIException {
 		
-		Commit c = new Commit();
-		c.setSha(sha);
-		c.setAuthor(jsonAuthor.getAsJsonObject().get("name").getAsString());
-		c.setDate(jsonAuthor.get("date").getAsString());
-		c.setMessage(jsonCommit.get("message").getAsString());
+		String recordKey = KEY_COMMIT_RECORD + sha;
+		if (this.cache.contains(recordKey)) {
+			countLookup(CACHE_COMMITS, RESULT_HIT);
+			return CommitRecords.decode(this.cache.open(recordKey), sha, this.paths, this.authors);
+		}
 		
-		// Recupera i file toccati dal commit
-		JsonArray jsonDiffs = jsonResponse.get("files").getAsJsonArray();
-		// Per ogni file, se è un file java, recupera il nome del file, le righe aggiunte e le righe rimosse e lo aggiunte alla lista dei file modificati dal commit
-		jsonDiffs.forEach(element -> {
-			JsonObject jsonDiff = element.getAsJsonObject();
-			Diff d = new Diff();
-			String filename = jsonDiff.get("filename").getAsString();
-			
-			if (filename.endsWith(".java")) {
-				d.setFilename(filename);
-				d.setAddedLines(jsonDiff.get("additions").getAsInt());
-				d.setDeletedLines(jsonDiff.get("deletions").getAsInt());
-				c.addDiff(d);	
-			}
-		});
+		String rawKey = KEY_COMMIT_INFO + sha;
+		if (this.cache.contains(rawKey)) {
+			countLookup(CACHE_COMMITS, RESULT_HIT);
+			return RestHelper.decode(this.cache.open(rawKey), reader -> CommitDecoder.decode(reader, sha, this.paths, this.authors));
+		}
 		
+		countLookup(CACHE_COMMITS, RESULT_MISS);
+		String remote = String.format(REMOTE_COMMIT_INFO, this.apiUrl, this.repoOwner, this.projectName, sha);
+		Commit c = RestHelper.getDecoded(remote, this.tokens, reader -> CommitDecoder.decode(reader, sha, this.paths, this.authors));
+		this.cache.put(recordKey, CommitRecords.encode(c, this.paths, this.authors));
 		return c;
 	}
 	
+	private static void countLookup(String cache, String result) {
+		PipelineMetrics.getInstance().increment(PipelineMetrics.CACHE_LOOKUPS, "cache", cache, "result", result);
+	}
+	
 }
@@ -0,0 +1,181 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
+import okhttp3.Response;
+
+/*
+ * Scheduler delle richieste a Github su uno o più token:
+ * - ogni token ha un token bucket che limita le richieste al secondo (limite secondario di Github)
+ * - X-RateLimit-Remaining e X-RateLimit-Reset di ogni risposta aggiornano le richieste residue del token
+ * - ad ogni richiesta viene scelto, tra i token disponibili, quello con più richieste residue
+ * - quando tutti i token sono esauriti si attende il primo reset invece di interrompere la costruzione
+ */
+public class GithubTokenPool {
+
+	private static final Logger LOGGER = Logger.getLogger(GithubTokenPool.class.getName());
+
+	private static final String HEADER_REMAINING = "X-RateLimit-Remaining";
+	private static final String HEADER_RESET = "X-RateLimit-Reset";
+	private static final String HEADER_RETRY_AFTER = "Retry-After";
+	private static final long DEFAULT_PAUSE_MILLIS = 60_000; // pausa di un token limitato senza indicazioni dal server
+	private static final long RESET_MARGIN_MILLIS = 1_000; // margine sull'orario di reset dichiarato da Github
+	private static final long LOG_WAIT_MILLIS = 5_000; // attese più lunghe vengono segnalate nel log
+
+	/* Un solo pool per ogni insieme di token, condiviso tra i progetti costruiti insieme */
+	private static final Map<List<String>, GithubTokenPool> POOLS = new ConcurrentHashMap<>();
+
+	private final List<TokenState> states;
+	private final double requestsPerSecond;
+	private final boolean waitForReset;
+
+	private static class TokenState {
+
+		private final String token;
+		private int remaining; // -1: sconosciuto, nessuna risposta ricevuta
+		private long pausedUntilMillis; // reset del limite o Retry-After
+		private double permits;
+		private long lastRefillNanos;
+
+		private TokenState(String token, double permits) {
+			this.token = token;
+			this.remaining = -1;
+			this.permits = permits;
+			this.lastRefillNanos = System.nanoTime();
+		}
+
+	}
+
+	/* requestsPerSecond <= 0: nessun limite di frequenza */
+	public GithubTokenPool(List<String> tokens, double requestsPerSecond, boolean waitForReset) {
+		if (tokens.isEmpty())
+			throw new IllegalArgumentException("Nessun token Github");
+		this.requestsPerSecond = requestsPerSecond;
+		this.waitForReset = waitForReset;
+		this.states = new ArrayList<>();
+		for (String t : tokens)
+			this.states.add(new TokenState(t, burst()));
+	}
+
+	public static GithubTokenPool shared(List<String> tokens) {
+		return POOLS.computeIfAbsent(new ArrayList<>(tokens),
+				t -> new GithubTokenPool(t, Settings.githubRequestsPerSecond(), Settings.githubWaitForReset()));
+	}
+
+	public int size() {
+		return this.states.size();
+	}
+
+	/* Token con cui eseguire la prossima richiesta; attende se nessun token è disponibile */
+	public synchronized String acquire() throws InterruptedIOException, RateLimitExceededGithubAPIException {
+		while (true) {
+			long now = System.currentTimeMillis();
+			TokenState best = null;
+			long waitMillis = Long.MAX_VALUE;
+			boolean allPaused = true;
+
+			for (TokenState s : this.states) {
+				if (s.pausedUntilMillis > now) {
+					waitMillis = Math.min(waitMillis, s.pausedUntilMillis - now);
+					continue;
+				}
+				if (s.pausedUntilMillis > 0) { // pausa terminata: le richieste residue tornano sconosciute
+					s.pausedUntilMillis = 0;
+					s.remaining = -1;
+				}
+				allPaused = false;
+				refill(s);
+				if (s.permits >= 1) {
+					if (best == null || s.remaining < 0 || (best.remaining >= 0 && s.remaining > best.remaining))
+						best = s;
+				} else {
+					waitMillis = Math.min(waitMillis, (long) Math.ceil((1 - s.permits) * 1000 / this.requestsPerSecond));
+				}
+			}
+
+			if (best != null) {
+				best.permits -= 1;
+				if (best.remaining > 0)
+					best.remaining--;
+				return best.token;
+			}
+
+			if (allPaused && !this.waitForReset)
+				throw new RateLimitExceededGithubAPIException();
+			if (allPaused && waitMillis >= LOG_WAIT_MILLIS)
+				LOGGER.log(Level.INFO, "Limite di richieste raggiunto su tutti i token Github, attesa di {0} s", TimeUnit.MILLISECONDS.toSeconds(waitMillis));
+			pause(Math.max(1, waitMillis));
+		}
+	}
+
+	/* Aggiorna lo stato del token con le intestazioni di una risposta */
+	public synchronized void update(String token, Response response) {
+		TokenState s = find(token);
+		String remaining = response.header(HEADER_REMAINING);
+		String reset = response.header(HEADER_RESET);
+		String retryAfter = response.header(HEADER_RETRY_AFTER);
+
+		try {
+			if (remaining != null)
+				s.remaining = Integer.parseInt(remaining.trim());
+			if (s.remaining == 0 && reset != null)
+				s.pausedUntilMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(reset.trim())) + RESET_MARGIN_MILLIS;
+			if (retryAfter != null)
+				s.pausedUntilMillis = Math.max(s.pausedUntilMillis, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+		} catch (NumberFormatException e) {
+			LOGGER.log(Level.FINE, "Intestazioni di rate limit non valide: {0}", e.getMessage());
+		}
+		notifyAll();
+	}
+
+	/* Risposta di rate limit: il token resta in pausa fino al reset indicato o, in mancanza, per un minuto */
+	public synchronized void rateLimited(String token) {
+		TokenState s = find(token);
+		long now = System.currentTimeMillis();
+		if (s.pausedUntilMillis <= now)
+			s.pausedUntilMillis = now + DEFAULT_PAUSE_MILLIS;
+		s.remaining = 0;
+		LOGGER.log(Level.WARNING, "Limite di richieste raggiunto per un token Github, in pausa per {0} s", TimeUnit.MILLISECONDS.toSeconds(s.pausedUntilMillis - now));
+	}
+
+	private TokenState find(String token) {
+		for (TokenState s : this.states)
+			if (s.token.equals(token))
+				return s;
+		throw new IllegalArgumentException("Token non presente nel pool");
+	}
+
+	private void refill(TokenState s) {
+		long now = System.nanoTime();
+		if (this.requestsPerSecond <= 0) {
+			s.permits = 1;
+		} else {
+			double elapsed = (now - s.lastRefillNanos) / 1e9;
+			s.permits = Math.min(burst(), s.permits + elapsed * this.requestsPerSecond);
+		}
+		s.lastRefillNanos = now;
+	}
+
+	/* Capacità del bucket: al più un secondo di richieste in blocco */
+	private double burst() {
+		return Math.max(1, this.requestsPerSecond);
+	}
+
+	private void pause(long millis) throws InterruptedIOException {
+		try {
+			wait(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Attesa di un token Github interrotta");
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/* Trasporto HTTP condiviso: un solo client con pool di connessioni keep-alive, HTTP/2 e retry con backoff */
+public class HttpTransport {
+
+	private static final Logger LOGGER = Logger.getLogger(HttpTransport.class.getName());
+
+	private static final long KEEP_ALIVE_MINUTES = 5;
+	private static final String STATUS_TIMEOUT = "timeout"; // etichetta delle richieste senza risposta per timeout
+	private static final String STATUS_FAILED = "error"; // etichetta delle richieste senza risposta per altri errori
+
+	private static final HttpTransport INSTANCE = new HttpTransport();
+
+	private final OkHttpClient client;
+	private final int maxRequestsPerHost;
+	private final int maxRetries;
+	private final long retryBackoffMillis;
+	private final Map<String, Semaphore> hostPermits;
+
+	private final LongAdder requests;
+	private final LongAdder retries;
+	private final LongAdder failures;
+	private final LongAdder elapsedMillis;
+
+	public interface ResponseHandler<T> {
+		T handle(Response response) throws IOException;
+	}
+
+	private HttpTransport() {
+		this.maxRequestsPerHost = Settings.httpMaxRequestsPerHost();
+		this.maxRetries = Settings.httpMaxRetries();
+		this.retryBackoffMillis = Settings.httpRetryBackoffMillis();
+		this.hostPermits = new ConcurrentHashMap<>();
+
+		this.requests = new LongAdder();
+		this.retries = new LongAdder();
+		this.failures = new LongAdder();
+		this.elapsedMillis = new LongAdder();
+
+		Dispatcher dispatcher = new Dispatcher();
+		dispatcher.setMaxRequestsPerHost(this.maxRequestsPerHost);
+
+		this.client = new OkHttpClient.Builder()
+				.connectionPool(new ConnectionPool(this.maxRequestsPerHost, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+				.dispatcher(dispatcher)
+				.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+				.eventListener(new EventListener() {
+					@Override
+					public void responseBodyEnd(Call call, long byteCount) {
+						PipelineMetrics.getInstance().add(PipelineMetrics.HTTP_RESPONSE_BYTES, byteCount, "host", call.request().url().host());
+					}
+				})
+				.build();
+	}
+
+	public static HttpTransport getInstance() {
+		return INSTANCE;
+	}
+
+	/*
+	 * Esegue la richiesta rispettando il limite di richieste per host (le chiamate sincrone non passano dal dispatcher)
+	 * e ripete le richieste fallite per timeout o con risposta 5xx
+	 */
+	public <T> T execute(Request request, ResponseHandler<T> handler) throws IOException {
+		Semaphore permits = this.hostPermits.computeIfAbsent(request.url().host(), h -> new Semaphore(this.maxRequestsPerHost));
+		acquire(permits);
+		try {
+			return executeWithRetry(request, handler);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private <T> T executeWithRetry(Request request, ResponseHandler<T> handler) throws IOException {
+		PipelineMetrics metrics = PipelineMetrics.getInstance();
+		String host = request.url().host();
+		int attempt = 0;
+		while (true) {
+			long start = System.nanoTime();
+			String status = STATUS_FAILED;
+			this.requests.increment();
+			try (Response response = this.client.newCall(request).execute()) {
+				status = String.valueOf(response.code());
+				if (response.code() < 500 || attempt >= this.maxRetries)
+					return handler.handle(response);
+				LOGGER.log(Level.WARNING, "Risposta {0} da {1}, nuovo tentativo", new Object[] { response.code(), host });
+			} catch (InterruptedIOException e) {
+				status = STATUS_TIMEOUT;
+				if (attempt >= this.maxRetries) {
+					this.failures.increment();
+					throw e;
+				}
+				LOGGER.log(Level.WARNING, "Timeout verso {0}, nuovo tentativo", host);
+			} finally {
+				long nanos = System.nanoTime() - start;
+				long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+				this.elapsedMillis.add(millis);
+				metrics.increment(PipelineMetrics.HTTP_REQUESTS, "host", host, "status", status);
+				metrics.observeNanos(PipelineMetrics.HTTP_REQUEST_DURATION, nanos, "host", host);
+				LOGGER.log(Level.FINE, "{0} {1} in {2} ms", new Object[] { request.method(), request.url(), millis });
+			}
+
+			this.retries.increment();
+			metrics.increment(PipelineMetrics.HTTP_RETRIES, "host", host);
+			backoff(attempt++);
+		}
+	}
+
+	private void backoff(int attempt) throws IOException {
+		try {
+			Thread.sleep(this.retryBackoffMillis << Math.min(attempt, 10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Attesa del nuovo tentativo interrotta");
+		}
+	}
+
+	private void acquire(Semaphore permits) throws IOException {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Attesa di una connessione interrotta");
+		}
+	}
+
+	public void logStatistics() {
+		long count = this.requests.sum();
+		if (count == 0)
+			return;
+		LOGGER.log(Level.INFO, "Richieste HTTP: {0} (tentativi ripetuti: {1}, falliti: {2}), tempo medio {3} ms, connessioni nel pool: {4}",
+				new Object[] { count, this.retries.sum(), this.failures.sum(), this.elapsedMillis.sum() / count, this.client.connectionPool().connectionCount() });
+	}
+
+}
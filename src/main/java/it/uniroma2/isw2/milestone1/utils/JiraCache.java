@@ -0,0 +1,167 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+
+/*
+ * Cache su disco delle risposte di Jira, un file per progetto e per query/pagina: .cache/jira/<progetto>/<chiave>-<hash url>.json
+ * Una risposta è valida per il TTL configurato a partire dall'ultimo download o dall'ultima rivalidazione;
+ * accanto al corpo vengono conservati ETag e Last-Modified per le richieste condizionali.
+ */
+public class JiraCache {
+
+	private static final String CACHE_FOLDER = ".cache/jira/%s";
+	private static final String BODY_SUFFIX = ".json";
+	private static final String META_SUFFIX = ".meta";
+	private static final String STAGING_SUFFIX = ".staging";
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "last-modified";
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	private static final int URL_HASH_LENGTH = 12;
+
+	private final Path directory;
+	private final Duration ttl;
+	private final boolean offline;
+
+	/* Risposta in cache con i validatori per la richiesta condizionale */
+	public static class Entry {
+
+		private final String body;
+		private final String etag;
+		private final String lastModified;
+		private final boolean fresh;
+
+		private Entry(String body, String etag, String lastModified, boolean fresh) {
+			this.body = body;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.fresh = fresh;
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public boolean isFresh() {
+			return fresh;
+		}
+
+	}
+
+	public JiraCache(String projectName) {
+		this(Paths.get(String.format(CACHE_FOLDER, projectName)), Settings.jiraCacheTtl(), Settings.jiraOffline());
+	}
+
+	public JiraCache(Path directory, Duration ttl, boolean offline) {
+		this.directory = directory;
+		this.ttl = ttl;
+		this.offline = offline;
+	}
+
+	/* Modalità offline: le risposte vengono lette soltanto dalla cache, anche se scadute */
+	public boolean isOffline() {
+		return offline;
+	}
+
+	/* null se la risposta non è in cache */
+	public Entry get(String key, String url) throws IOException {
+		Path body = bodyPath(key, url);
+		if (!Files.exists(body))
+			return null;
+
+		Properties meta = readMeta(metaPath(key, url));
+		Instant expiry = Files.getLastModifiedTime(body).toInstant().plus(this.ttl);
+		return new Entry(new String(Files.readAllBytes(body), StandardCharsets.UTF_8), meta.getProperty(ETAG), meta.getProperty(LAST_MODIFIED),
+				Instant.now().isBefore(expiry));
+	}
+
+	/* Risposta rivalidata dal server (304): resta valida per un altro TTL */
+	public void touch(String key, String url) throws IOException {
+		Files.setLastModifiedTime(bodyPath(key, url), FileTime.from(Instant.now()));
+	}
+
+	public void put(String key, String url, String body, String etag, String lastModified) throws IOException {
+		Files.createDirectories(this.directory);
+
+		Properties meta = new Properties();
+		if (etag != null)
+			meta.setProperty(ETAG, etag);
+		if (lastModified != null)
+			meta.setProperty(LAST_MODIFIED, lastModified);
+		Path metaPath = metaPath(key, url);
+		Path metaStaging = metaPath.resolveSibling(metaPath.getFileName() + STAGING_SUFFIX);
+		try (OutputStream out = Files.newOutputStream(metaStaging)) {
+			meta.store(out, url);
+		}
+		Files.move(metaStaging, metaPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		/* Il corpo viene scritto per ultimo: la sua data di modifica è l'istante del download */
+		Path bodyPath = bodyPath(key, url);
+		Path bodyStaging = bodyPath.resolveSibling(bodyPath.getFileName() + STAGING_SUFFIX);
+		Files.write(bodyStaging, body.getBytes(StandardCharsets.UTF_8));
+		Files.move(bodyStaging, bodyPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/* Elimina tutte le risposte in cache del progetto */
+	void clear() throws IOException {
+		if (!Files.isDirectory(this.directory))
+			return;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+			for (Path f : files)
+				Files.delete(f);
+		}
+	}
+
+	private static Properties readMeta(Path path) throws IOException {
+		Properties meta = new Properties();
+		if (Files.exists(path)) {
+			try (InputStream in = Files.newInputStream(path)) {
+				meta.load(in);
+			}
+		}
+		return meta;
+	}
+
+	private Path bodyPath(String key, String url) {
+		return this.directory.resolve(fileName(key, url) + BODY_SUFFIX);
+	}
+
+	private Path metaPath(String key, String url) {
+		return this.directory.resolve(fileName(key, url) + META_SUFFIX);
+	}
+
+	/* L'hash dell'url distingue le risposte a query diverse con la stessa chiave */
+	private static String fileName(String key, String url) {
+		try {
+			byte[] hash = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(url.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder(key).append('-');
+			for (int i = 0; i < URL_HASH_LENGTH / 2; i++)
+				name.append(String.format("%02x", hash[i]));
+			return name.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
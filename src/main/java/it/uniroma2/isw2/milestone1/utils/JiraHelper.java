@@ -7,6 +7,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,10 +25,20 @@ public class JiraHelper {
 
 	private static final Logger LOGGER = Logger.getLogger(JiraHelper.class.getName());
 	
+	static final int MAX_RESULTS = 1000; // issue richieste per pagina
+	static final String KEY_PROJECT = "project"; // chiave in cache della risposta con le versioni
+	static final String KEY_SEARCH = "search-"; // prefisso delle chiavi in cache delle pagine di bug
+	
 	private String projectName;
+	private JiraCache cache;
 	
 	public JiraHelper(String projectName) {
+		this(projectName, new JiraCache(projectName));
+	}
+	
+	JiraHelper(String projectName, JiraCache cache) {
 		this.projectName = projectName;
+		this.cache = cache;
 	}
 	
 	public List<Version> retrieveVersions() throws IOException {
@@ -32,9 +46,7 @@ public class JiraHelper {
 		List<Version> versions = new ArrayList<>();
 		int versionId = 1;
 		
-		final String URL = "https://issues.apache.org/jira/rest/api/2/project/" + this.projectName;
-		
-		JsonArray jsonVersions = RestHelper.getJSONObject(URL).get("versions").getAsJsonArray();
+		JsonArray jsonVersions = RestHelper.getJSONObject(this.getProjectURL(), this.cache, KEY_PROJECT).get("versions").getAsJsonArray();
 		for (JsonElement jsonElement : jsonVersions) {
 			JsonObject jsonVersion = jsonElement.getAsJsonObject();
 			if (jsonVersion.get("releaseDate") == null) 
@@ -64,30 +76,36 @@ public class JiraHelper {
 		return versions;
 	}
 	
+	/*
+	 * La prima pagina fornisce il numero totale di bug: le pagine successive vengono richieste contemporaneamente
+	 * (al più jira.parallelism alla volta) e unite nell'ordine di startAt, come nel recupero seriale
+	 */
 	public List<Bug> retrieveBugs(List<Version> versions) throws IOException {
 		
-		final int MAX_RESULTS = 1000;
-		
-		int visited = 0;
-		int total = 0;
-		
 		List<Bug> bugs = new ArrayList<Bug>();
 		
-		do {
-			JsonObject response = RestHelper.getJSONObject(this.getBugsURL(visited, MAX_RESULTS));
-			JsonArray jsonIssues = response.get("issues").getAsJsonArray();
-			total = response.get("total").getAsInt();
-			
-			for (JsonElement jsonElement : jsonIssues) {
-				JsonObject jsonIssue = jsonElement.getAsJsonObject();
-				Bug bug = Bug.fromJsonObject(jsonIssue, versions);
-				if (bug != null)
-					bugs.add(bug);
-			}
-			
-			visited += jsonIssues.size();
+		JsonObject first = this.retrieveBugsPage(0);
+		int total = first.get("total").getAsInt();
+		int pageSize = first.get("issues").getAsJsonArray().size();
+		int visited = this.addBugs(first, versions, bugs);
+		
+		if (visited < total && pageSize > 0) {
+			List<Integer> startIndexes = new ArrayList<>();
+			for (int startAt = pageSize; startAt < total; startAt += pageSize)
+				startIndexes.add(startAt);
 			
-		} while(visited < total);
+			List<JsonObject> pages = this.retrieveBugsPages(startIndexes);
+			for (int i = 0; i < pages.size() && visited == startIndexes.get(i); i++)
+				visited += this.addBugs(pages.get(i), versions, bugs);
+		}
+		
+		/* Una pagina più corta del previsto lascia un buco: il resto viene recuperato serialmente */
+		while (visited < total) {
+			int read = this.addBugs(this.retrieveBugsPage(visited), versions, bugs);
+			if (read == 0)
+				break;
+			visited += read;
+		}
 		
 		/* Ordinamento dei bug per OV */
 		bugs.sort(Comparator.comparing(b -> b.getOv().getReleaseDate()));
@@ -95,7 +113,58 @@ public class JiraHelper {
 		return bugs;		
 	}
 	
-	private String getBugsURL(int startIndex, int maxResults) {
+	private JsonObject retrieveBugsPage(int startAt) throws IOException {
+		return RestHelper.getJSONObject(this.getBugsURL(startAt, MAX_RESULTS), this.cache, KEY_SEARCH + startAt);
+	}
+	
+	/* Pagine nello stesso ordine degli indici richiesti */
+	private List<JsonObject> retrieveBugsPages(List<Integer> startIndexes) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(startIndexes.size(), Settings.jiraParallelism()));
+		try {
+			List<Future<JsonObject>> futures = new ArrayList<>();
+			for (int startAt : startIndexes)
+				futures.add(executor.submit(() -> this.retrieveBugsPage(startAt)));
+			
+			List<JsonObject> pages = new ArrayList<>();
+			for (Future<JsonObject> f : futures)
+				pages.add(awaitPage(f));
+			return pages;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private static JsonObject awaitPage(Future<JsonObject> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Recupero dei bug interrotto", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException(cause);
+		}
+	}
+	
+	/* Aggiunge i bug validi della pagina e restituisce il numero di issue lette */
+	private int addBugs(JsonObject page, List<Version> versions, List<Bug> bugs) {
+		JsonArray jsonIssues = page.get("issues").getAsJsonArray();
+		for (JsonElement jsonElement : jsonIssues) {
+			JsonObject jsonIssue = jsonElement.getAsJsonObject();
+			Bug bug = Bug.fromJsonObject(jsonIssue, versions);
+			if (bug != null)
+				bugs.add(bug);
+		}
+		return jsonIssues.size();
+	}
+	
+	String getProjectURL() {
+		return "https://issues.apache.org/jira/rest/api/2/project/" + this.projectName;
+	}
+	
+	String getBugsURL(int startIndex, int maxResults) {
 		return new StringBuilder("https://issues.apache.org/jira/rest/api/2/search?jql=")
 				.append("project=").append(this.projectName)
 				.append("%20AND%20issueType=Bug%20AND%20resolution=Fixed%20AND%20status%20in%20(Resolved,Closed)&fields=fixVersions,versions,created")
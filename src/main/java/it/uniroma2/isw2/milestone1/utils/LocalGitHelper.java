@@ -0,0 +1,184 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+
+/*
+ * Legge la storia dei commit da un clone locale con un solo 'git log --numstat' letto in streaming,
+ * senza token né limiti di richieste. Per ottenere gli stessi dati delle API di Github:
+ * - i commit sono dal più vecchio al più recente (--reverse), come la lista di Github rovesciata
+ * - la data è quella dell'autore convertita in UTC (TZ=UTC e --date=iso-strict-local)
+ * - i merge riportano il diff rispetto al primo genitore (--diff-merges=first-parent)
+ * - i file rinominati vengono contati con il nuovo percorso
+ */
+public class LocalGitHelper implements CommitSource {
+
+	private static final Logger LOGGER = Logger.getLogger(LocalGitHelper.class.getName());
+
+	private static final char RECORD_SEPARATOR = '\u001e';
+	private static final char FIELD_SEPARATOR = '\u001f';
+	private static final int HEADER_FIELDS = 4; // sha, autore, data, messaggio
+	private static final String RENAME_ARROW = " => ";
+	private static final String BINARY_LINES = "-";
+
+	private static final List<String> GIT_LOG = Arrays.asList("git", "-c", "core.quotePath=false", "log",
+			"--reverse", "--numstat", "--diff-merges=first-parent", "--date=iso-strict-local",
+			"--format=%x1e%H%x1f%an%x1f%ad%x1f%B%x1f");
+
+	private final Path repository;
+	private final SymbolTable paths;
+	private final SymbolTable authors;
+
+	/* paths, authors: dizionari di progetto in cui registrare percorsi dei file e autori dei commit */
+	public LocalGitHelper(Path repository, SymbolTable paths, SymbolTable authors) {
+		this.repository = repository;
+		this.paths = paths;
+		this.authors = authors;
+	}
+
+	@Override
+	public List<Commit> retrieveCommits(LocalDateTime targetDate) throws IOException {
+		List<Commit> commits = new ArrayList<>();
+		retrieveCommits(targetDate, commits::add);
+		return commits;
+	}
+
+	@Override
+	public void retrieveCommits(LocalDateTime targetDate, Sink sink) throws IOException {
+		if (!Files.isDirectory(this.repository))
+			throw new IOException(String.format("Clone locale non trovato: %s", this.repository.toAbsolutePath()));
+
+		ProcessBuilder builder = new ProcessBuilder(GIT_LOG)
+				.directory(this.repository.toFile())
+				.redirectError(ProcessBuilder.Redirect.INHERIT);
+		builder.environment().put("TZ", "UTC");
+
+		Process git = builder.start();
+		int commits;
+		boolean truncated = true; // anche un errore durante la lettura interrompe git log
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+			commits = parse(reader, targetDate, sink);
+			truncated = reader.read() != -1;
+		} finally {
+			/* Se la data target è stata raggiunta il resto della storia non serve; altrimenti git log termina da solo */
+			if (truncated)
+				git.destroy();
+		}
+
+		int exitCode = waitFor(git);
+		if (!truncated && exitCode != 0)
+			throw new IOException(String.format("git log terminato con codice %d in %s", exitCode, this.repository));
+		LOGGER.log(Level.INFO, "Letti {0} commit da {1}", new Object[] { commits, this.repository });
+	}
+
+	/* Consegna i commit fino al primo successivo alla data target e ne restituisce il numero */
+	int parse(BufferedReader reader, LocalDateTime targetDate, Sink sink) throws IOException {
+		int commits = 0;
+		Commit current = null;
+
+		String line = reader.readLine();
+		while (line != null) {
+			if (!line.isEmpty() && line.charAt(0) == RECORD_SEPARATOR) {
+				commits += deliver(sink, current);
+				StringBuilder header = new StringBuilder(line.substring(1));
+				while (count(header, FIELD_SEPARATOR) < HEADER_FIELDS && (line = reader.readLine()) != null)
+					header.append('\n').append(line);
+
+				current = parseHeader(header.toString());
+				if (current.getDate().isAfter(targetDate))
+					return commits;
+			} else if (!line.isEmpty() && current != null) {
+				parseNumstat(current, line);
+			}
+			line = reader.readLine();
+		}
+
+		return commits + deliver(sink, current);
+	}
+
+	/* 1 se il commit è stato consegnato */
+	private static int deliver(Sink sink, Commit c) throws IOException {
+		if (c == null)
+			return 0;
+		CommitDecoder.completeFileIds(c);
+		sink.accept(c);
+		return 1;
+	}
+
+	private Commit parseHeader(String header) {
+		String[] fields = header.split(String.valueOf(FIELD_SEPARATOR), -1);
+		Commit c = new Commit();
+		c.setSha(fields[0]);
+		c.setAuthorId(this.authors.intern(fields[1]));
+		c.setDate(fields[2]);
+		c.setMessage(stripTrailingNewlines(fields[3]));
+		return c;
+	}
+
+	/* additions \t deletions \t percorso (righe '-' per i file binari) */
+	private void parseNumstat(Commit c, String line) {
+		String[] fields = line.split("\t", 3);
+		if (fields.length < 3)
+			return;
+		int additions = BINARY_LINES.equals(fields[0]) ? 0 : Integer.parseInt(fields[0]);
+		int deletions = BINARY_LINES.equals(fields[1]) ? 0 : Integer.parseInt(fields[1]);
+		CommitDecoder.addJavaDiff(c, renamedPath(fields[2]), additions, deletions, this.paths);
+	}
+
+	/* Nuovo percorso di un file rinominato: 'a/{b => c}/d' diventa 'a/c/d', 'a => b' diventa 'b' */
+	static String renamedPath(String path) {
+		int arrow = path.indexOf(RENAME_ARROW);
+		if (arrow < 0)
+			return path;
+
+		int open = path.lastIndexOf('{', arrow);
+		int close = path.indexOf('}', arrow);
+		if (open < 0 || close < 0)
+			return path.substring(arrow + RENAME_ARROW.length());
+
+		String renamed = path.substring(0, open) + path.substring(arrow + RENAME_ARROW.length(), close) + path.substring(close + 1);
+		return renamed.replace("//", "/");
+	}
+
+	private static String stripTrailingNewlines(String message) {
+		int end = message.length();
+		while (end > 0 && message.charAt(end - 1) == '\n')
+			end--;
+		return message.substring(0, end);
+	}
+
+	private static int count(CharSequence text, char c) {
+		int n = 0;
+		for (int i = 0; i < text.length(); i++)
+			if (text.charAt(i) == c)
+				n++;
+		return n;
+	}
+
+	private static int waitFor(Process process) throws IOException {
+		try {
+			return process.waitFor();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Lettura della storia interrotta", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		// nessuna risorsa aperta oltre la durata di retrieveCommits
+	}
+
+}
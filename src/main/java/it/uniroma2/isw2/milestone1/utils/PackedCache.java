@@ -0,0 +1,304 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Cache a segmento unico, append-only: ogni record è [lunghezza chiave][chiave][lunghezza corpo][corpo].
+ * All'apertura il file viene mappato in memoria a finestre (un MappedByteBuffer non supera i 2 GB) e scandito
+ * per costruire l'indice chiave -> offset; i record a cavallo di due finestre e quelli aggiunti durante l'esecuzione
+ * vengono letti direttamente dal canale.
+ */
+public class PackedCache implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(PackedCache.class.getName());
+
+	private static final int MAGIC = 0x4D31504B; // "M1PK"
+	private static final int FORMAT_VERSION = 1;
+	private static final int FILE_HEADER_SIZE = 8;
+	private static final String JSON_EXTENSION = ".json";
+	private static final String STAGING_SUFFIX = ".staging";
+	private static final int SEGMENT_SIZE = 1 << 30; // dimensione delle finestre mappate in memoria
+
+	private final Path path;
+	private final FileChannel channel;
+	private final Map<String, Entry> index;
+	private final int segmentSize;
+	private final List<MappedByteBuffer> segments; // finestra i: [i * segmentSize, (i+1) * segmentSize)
+	private long mappedSize; // i record oltre questa posizione si leggono dal canale
+	private long end;
+
+	private static class Entry {
+		private final long offset;
+		private final int length;
+
+		private Entry(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	public PackedCache(Path path) throws IOException {
+		this(path, SEGMENT_SIZE);
+	}
+
+	/* segmentSize: dimensione delle finestre mappate (ridotta nei test) */
+	PackedCache(Path path, int segmentSize) throws IOException {
+		this.path = path;
+		this.index = new ConcurrentHashMap<>();
+		this.segmentSize = segmentSize;
+		this.segments = new ArrayList<>();
+
+		if (path.getParent() != null)
+			Files.createDirectories(path.getParent());
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		if (this.channel.size() == 0)
+			writeFileHeader();
+		else
+			load();
+	}
+
+	private void writeFileHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION);
+		header.flip();
+		writeFully(header, 0);
+		this.end = FILE_HEADER_SIZE;
+		this.mappedSize = 0;
+	}
+
+	private void load() throws IOException {
+		long size = this.channel.size();
+		for (long start = 0; start < size; start += this.segmentSize)
+			this.segments.add(this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(this.segmentSize, size - start)));
+		this.mappedSize = size;
+		if (size < FILE_HEADER_SIZE)
+			throw new IOException(String.format("Formato della cache %s non riconosciuto", this.path));
+		ByteBuffer fileHeader = view(0, FILE_HEADER_SIZE);
+		if (fileHeader.getInt(0) != MAGIC || fileHeader.getInt(Integer.BYTES) != FORMAT_VERSION)
+			throw new IOException(String.format("Formato della cache %s non riconosciuto", this.path));
+
+		/* Scansione dei soli header dei record: i corpi non vengono toccati */
+		long position = FILE_HEADER_SIZE;
+		while (position + Short.BYTES <= size) {
+			int keyLength = Short.toUnsignedInt(view(position, Short.BYTES).getShort(0));
+			long bodyPosition = position + Short.BYTES + keyLength + Integer.BYTES;
+			if (bodyPosition > size)
+				break;
+			int bodyLength = view(bodyPosition - Integer.BYTES, Integer.BYTES).getInt(0);
+			if (bodyLength < 0 || bodyPosition + bodyLength > size)
+				break;
+
+			byte[] key = new byte[keyLength];
+			view(position + Short.BYTES, keyLength).get(key);
+
+			this.index.put(new String(key, StandardCharsets.UTF_8), new Entry(bodyPosition, bodyLength));
+			position = bodyPosition + bodyLength;
+		}
+
+		/* Un record incompleto in coda (scrittura interrotta) viene scartato */
+		if (position < size) {
+			LOGGER.log(Level.WARNING, "Record incompleto in coda alla cache {0}, troncato", this.path);
+			this.channel.truncate(position);
+			this.mappedSize = position;
+		}
+		this.end = position;
+	}
+
+	public boolean contains(String key) {
+		return this.index.containsKey(key);
+	}
+
+	/* Chiavi presenti nella cache (vista non modificabile) */
+	public Set<String> keys() {
+		return Collections.unmodifiableSet(this.index.keySet());
+	}
+
+	public int size() {
+		return this.index.size();
+	}
+
+	public String get(String key) throws IOException {
+		ByteBuffer body = read(key);
+		if (body == null)
+			return null;
+		if (body.hasArray())
+			return new String(body.array(), body.arrayOffset() + body.position(), body.remaining(), StandardCharsets.UTF_8);
+		return StandardCharsets.UTF_8.decode(body).toString();
+	}
+
+	/* Restituisce una vista in sola lettura del corpo associato alla chiave, null se assente */
+	public ByteBuffer read(String key) throws IOException {
+		Entry entry = this.index.get(key);
+		return (entry == null) ? null : view(entry.offset, entry.length);
+	}
+
+	/* Byte [position, position + length) del file: dalla finestra mappata che li contiene tutti, altrimenti dal canale */
+	private ByteBuffer view(long position, int length) throws IOException {
+		int segment = (int) (position / this.segmentSize);
+		long segmentStart = (long) segment * this.segmentSize;
+		if (position + length <= this.mappedSize && position + length <= segmentStart + this.segmentSize) {
+			ByteBuffer view = this.segments.get(segment).duplicate();
+			view.position((int) (position - segmentStart));
+			view.limit((int) (position - segmentStart) + length);
+			return view.slice().asReadOnlyBuffer();
+		}
+
+		ByteBuffer bytes = ByteBuffer.allocate(length);
+		long current = position;
+		while (bytes.hasRemaining()) {
+			int read = this.channel.read(bytes, current);
+			if (read < 0)
+				throw new IOException(String.format("Record troncato nella cache %s", this.path));
+			current += read;
+		}
+		bytes.flip();
+		return bytes;
+	}
+
+	public InputStream open(String key) throws IOException {
+		ByteBuffer body = read(key);
+		return (body == null) ? null : new ByteBufferInputStream(body);
+	}
+
+	public void put(String key, String body) throws IOException {
+		put(key, body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public synchronized void put(String key, byte[] body) throws IOException {
+		if (this.index.containsKey(key))
+			return;
+
+		ByteBuffer header = recordHeader(key, body.length);
+		long bodyStart = this.end + header.remaining();
+		writeFully(header, this.end);
+		writeFully(ByteBuffer.wrap(body), bodyStart);
+
+		this.end = bodyStart + body.length;
+		this.index.put(key, new Entry(bodyStart, body.length));
+	}
+
+	/*
+	 * Copia il flusso in un file temporaneo accanto alla cache, senza tenere il lock né il corpo in memoria,
+	 * e lo accoda al segmento con un trasferimento da canale a canale
+	 */
+	public void put(String key, InputStream body) throws IOException {
+		Path staging = Files.createTempFile(this.path.toAbsolutePath().getParent(), this.path.getFileName().toString(), STAGING_SUFFIX);
+		try {
+			Files.copy(body, staging, StandardCopyOption.REPLACE_EXISTING);
+			try (FileChannel source = FileChannel.open(staging, StandardOpenOption.READ)) {
+				append(key, source);
+			}
+		} finally {
+			Files.deleteIfExists(staging);
+		}
+	}
+
+	private synchronized void append(String key, FileChannel source) throws IOException {
+		if (this.index.containsKey(key))
+			return;
+
+		long length = source.size();
+		if (length > Integer.MAX_VALUE)
+			throw new IOException(String.format("Corpo troppo grande per la cache: %s", key));
+
+		ByteBuffer header = recordHeader(key, (int) length);
+		long bodyStart = this.end + header.remaining();
+		writeFully(header, this.end);
+		long transferred = 0;
+		while (transferred < length)
+			transferred += this.channel.transferFrom(source, bodyStart + transferred, length - transferred);
+
+		this.end = bodyStart + length;
+		this.index.put(key, new Entry(bodyStart, (int) length));
+	}
+
+	private ByteBuffer recordHeader(String key, int bodyLength) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		if (keyBytes.length > 0xFFFF)
+			throw new IOException(String.format("Chiave troppo lunga per la cache: %s", key));
+
+		ByteBuffer header = ByteBuffer.allocate(Short.BYTES + keyBytes.length + Integer.BYTES);
+		header.putShort((short) keyBytes.length).put(keyBytes).putInt(bodyLength);
+		header.flip();
+		return header;
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		long current = position;
+		while (buffer.hasRemaining())
+			current += this.channel.write(buffer, current);
+	}
+
+	/* Importa i file json di una cartella di cache (un file per chiave) non ancora presenti */
+	public int importDirectory(Path directory, String keyPrefix) throws IOException {
+		if (!Files.isDirectory(directory))
+			return 0;
+
+		int imported = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + JSON_EXTENSION)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				String key = keyPrefix + name.substring(0, name.length() - JSON_EXTENSION.length());
+				if (!contains(key)) {
+					put(key, Files.readAllBytes(file));
+					imported++;
+				}
+			}
+		}
+		return imported;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.channel.close();
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? (this.buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!this.buffer.hasRemaining())
+				return -1;
+			int n = Math.min(len, this.buffer.remaining());
+			this.buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+
+	}
+
+}
@@ -0,0 +1,231 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/*
+ * Metriche del processo, condivise da tutti i progetti costruiti: contatori e istogrammi di durate (in secondi),
+ * identificati da nome ed etichette (coppie nome, valore), esportati a fine esecuzione in json o nel formato testuale di Prometheus.
+ */
+public class PipelineMetrics {
+
+	private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+	public static final String STAGE_DURATION = "milestone1_stage_duration_seconds"; // project, stage
+	public static final String DATASET_ROWS = "milestone1_dataset_rows_total"; // project
+	public static final String HTTP_REQUESTS = "milestone1_http_requests_total"; // host, status (codice o timeout)
+	public static final String HTTP_REQUEST_DURATION = "milestone1_http_request_duration_seconds"; // host
+	public static final String HTTP_RETRIES = "milestone1_http_retries_total"; // host
+	public static final String HTTP_RESPONSE_BYTES = "milestone1_http_response_bytes_total"; // host
+	public static final String CACHE_LOOKUPS = "milestone1_cache_lookups_total"; // cache, result
+	public static final String GITHUB_RATE_LIMITED = "milestone1_github_rate_limited_total";
+
+	private static final double[] BUCKETS = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300 }; // limiti superiori in secondi
+	private static final String INFINITY = "+Inf";
+
+	/* Serie in ordine di nome ed etichette, come vengono esportate */
+	private final Map<String, Counter> counters;
+	private final Map<String, Histogram> histograms;
+
+	private abstract static class Series {
+
+		protected final String name;
+		protected final String[] labels;
+
+		Series(String name, String[] labels) {
+			if (labels.length % 2 != 0)
+				throw new IllegalArgumentException(String.format("Etichette della metrica %s non in coppie nome, valore", name));
+			this.name = name;
+			this.labels = labels.clone();
+		}
+
+		/* {a="1",b="2"} con eventuali etichette aggiuntive in coda */
+		String labelsText(String... extra) {
+			StringBuilder text = new StringBuilder();
+			appendLabels(text, this.labels);
+			appendLabels(text, extra);
+			return (text.length() == 0) ? "" : "{" + text + "}";
+		}
+
+		private static void appendLabels(StringBuilder text, String[] labels) {
+			for (int i = 0; i < labels.length; i += 2) {
+				if (text.length() > 0)
+					text.append(',');
+				text.append(labels[i]).append("=\"").append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+			}
+		}
+
+		JsonObject toJson() {
+			JsonObject json = new JsonObject();
+			json.addProperty("name", this.name);
+			JsonObject jsonLabels = new JsonObject();
+			for (int i = 0; i < this.labels.length; i += 2)
+				jsonLabels.addProperty(this.labels[i], this.labels[i + 1]);
+			json.add("labels", jsonLabels);
+			return json;
+		}
+
+	}
+
+	private static class Counter extends Series {
+
+		private final LongAdder value = new LongAdder();
+
+		Counter(String name, String[] labels) {
+			super(name, labels);
+		}
+
+	}
+
+	private static class Histogram extends Series {
+
+		private final LongAdder[] buckets;
+		private final LongAdder count = new LongAdder();
+		private final DoubleAdder sum = new DoubleAdder();
+
+		Histogram(String name, String[] labels) {
+			super(name, labels);
+			this.buckets = new LongAdder[BUCKETS.length];
+			for (int i = 0; i < BUCKETS.length; i++)
+				this.buckets[i] = new LongAdder();
+		}
+
+		void observe(double seconds) {
+			for (int i = 0; i < BUCKETS.length; i++) {
+				if (seconds <= BUCKETS[i]) {
+					this.buckets[i].increment();
+					break;
+				}
+			}
+			this.count.increment();
+			this.sum.add(seconds);
+		}
+
+		/* Osservazioni minori o uguali a ciascun limite, come nei bucket di Prometheus */
+		long[] cumulativeCounts() {
+			long[] cumulative = new long[BUCKETS.length];
+			long total = 0;
+			for (int i = 0; i < BUCKETS.length; i++) {
+				total += this.buckets[i].sum();
+				cumulative[i] = total;
+			}
+			return cumulative;
+		}
+
+	}
+
+	private PipelineMetrics() {
+		this.counters = new ConcurrentSkipListMap<>();
+		this.histograms = new ConcurrentSkipListMap<>();
+	}
+
+	public static PipelineMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	private static String seriesKey(String name, String[] labels) {
+		return name + '\u0000' + String.join("\u0000", labels);
+	}
+
+	public void increment(String name, String... labels) {
+		add(name, 1, labels);
+	}
+
+	public void add(String name, long delta, String... labels) {
+		this.counters.computeIfAbsent(seriesKey(name, labels), k -> new Counter(name, labels)).value.add(delta);
+	}
+
+	public void observe(String name, double seconds, String... labels) {
+		this.histograms.computeIfAbsent(seriesKey(name, labels), k -> new Histogram(name, labels)).observe(seconds);
+	}
+
+	public void observeNanos(String name, long nanos, String... labels) {
+		observe(name, nanos / 1e9, labels);
+	}
+
+	/* Valore del contatore (0 se mai incrementato) */
+	public long count(String name, String... labels) {
+		Counter counter = this.counters.get(seriesKey(name, labels));
+		return (counter == null) ? 0 : counter.value.sum();
+	}
+
+	public void writeJson(Path path) throws IOException {
+		JsonArray jsonCounters = new JsonArray();
+		for (Counter c : this.counters.values()) {
+			JsonObject json = c.toJson();
+			json.addProperty("value", c.value.sum());
+			jsonCounters.add(json);
+		}
+
+		JsonArray jsonHistograms = new JsonArray();
+		for (Histogram h : this.histograms.values()) {
+			JsonObject json = h.toJson();
+			json.addProperty("count", h.count.sum());
+			json.addProperty("sum", h.sum.sum());
+			JsonObject jsonBuckets = new JsonObject();
+			long[] cumulative = h.cumulativeCounts();
+			for (int i = 0; i < BUCKETS.length; i++)
+				jsonBuckets.addProperty(formatDouble(BUCKETS[i]), cumulative[i]);
+			jsonBuckets.addProperty(INFINITY, h.count.sum());
+			json.add("buckets", jsonBuckets);
+			jsonHistograms.add(json);
+		}
+
+		JsonObject metrics = new JsonObject();
+		metrics.add("counters", jsonCounters);
+		metrics.add("histograms", jsonHistograms);
+		Files.write(path, new GsonBuilder().setPrettyPrinting().create().toJson(metrics).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/* Formato di esposizione testuale di Prometheus, una riga # TYPE per ogni nome */
+	public void writePrometheus(Path path) throws IOException {
+		List<String> lines = new ArrayList<>();
+		String current = null;
+		for (Counter c : this.counters.values()) {
+			if (!c.name.equals(current)) {
+				current = c.name;
+				lines.add(String.format("# TYPE %s counter", c.name));
+			}
+			lines.add(c.name + c.labelsText() + " " + c.value.sum());
+		}
+
+		for (Histogram h : this.histograms.values()) {
+			if (!h.name.equals(current)) {
+				current = h.name;
+				lines.add(String.format("# TYPE %s histogram", h.name));
+			}
+			long[] cumulative = h.cumulativeCounts();
+			for (int i = 0; i < BUCKETS.length; i++)
+				lines.add(h.name + "_bucket" + h.labelsText("le", formatDouble(BUCKETS[i])) + " " + cumulative[i]);
+			lines.add(h.name + "_bucket" + h.labelsText("le", INFINITY) + " " + h.count.sum());
+			lines.add(h.name + "_sum" + h.labelsText() + " " + formatDouble(h.sum.sum()));
+			lines.add(h.name + "_count" + h.labelsText() + " " + h.count.sum());
+		}
+
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (String line : lines) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		}
+	}
+
+	private static String formatDouble(double value) {
+		return (value == Math.rint(value) && !Double.isInfinite(value)) ? String.format(Locale.ROOT, "%.1f", value) : String.format(Locale.ROOT, "%s", value);
+	}
+
+}
@@ -0,0 +1,82 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import it.uniroma2.isw2.milestone1.entities.Bug;
+import it.uniroma2.isw2.milestone1.entities.Version;
+
+/*
+ * Proportion incrementale per il calcolo delle IV mancanti.
+ * I bug vengono visitati in ordine di OV; i bug con FV precedente alla OV corrente entrano, in ordine di FV,
+ * in un vettore di somme prefisse di P = (FV - IV) / (FV - OV): la media su tutti i bug già fixati costa O(1),
+ * per un totale di O(B log B). La media sugli ultimi 'window' bug fixati somma direttamente i loro P (O(window)):
+ * la differenza di due somme prefisse non è esatta e ne cambierebbe l'arrotondamento per eccesso.
+ */
+public class ProportionEngine {
+
+	private final List<Version> versions;
+	private final int window;
+
+	/* versions ordinate per data di rilascio, con id pari alla posizione + 1 */
+	public ProportionEngine(List<Version> versions) {
+		this(versions, 0);
+	}
+
+	/* window <= 0: media su tutti i bug fixati prima della OV, altrimenti solo sugli ultimi 'window' */
+	public ProportionEngine(List<Version> versions, int window) {
+		/* Le stime (e Bug.getProportion) usano gli id come posizioni nella lista delle versioni */
+		for (int i = 0; i < versions.size(); i++)
+			if (versions.get(i).getId() != i + 1)
+				throw new IllegalArgumentException(String.format("Id %d della versione %s diverso dalla posizione %d",
+						versions.get(i).getId(), versions.get(i).getName(), i + 1));
+		this.versions = versions;
+		this.window = window;
+	}
+
+	public void apply(List<Bug> bugs) {
+		List<Bug> byOv = new ArrayList<>(bugs);
+		byOv.sort(Comparator.comparing(b -> b.getOv().getReleaseDate()));
+		List<Bug> byFv = new ArrayList<>(bugs);
+		byFv.sort(Comparator.comparing(b -> b.getFv().getReleaseDate()));
+
+		double[] proportions = new double[byFv.size()];
+		double[] prefix = new double[byFv.size() + 1];
+		int fixed = 0;
+
+		for (Bug b : byOv) {
+			/*
+			 * Un bug con FV < OV corrente ha anche OV < OV corrente: è già stato visitato e la sua IV
+			 * (eventualmente stimata) è definitiva quando entra nelle somme
+			 */
+			while (fixed < byFv.size() && byFv.get(fixed).getFv().getReleaseDate().isBefore(b.getOv().getReleaseDate())) {
+				proportions[fixed] = byFv.get(fixed).getProportion();
+				prefix[fixed + 1] = prefix[fixed] + proportions[fixed];
+				fixed++;
+			}
+
+			if (b.getIv() == null) // Se IV mancante, allora la stima
+				b.setIv(estimateIv(b, proportions, prefix, fixed));
+		}
+	}
+
+	private Version estimateIv(Bug b, double[] proportions, double[] prefix, int fixed) {
+		int counter = fixed;
+		double sumP = prefix[fixed];
+		if (this.window > 0 && this.window < fixed) {
+			counter = this.window;
+			sumP = 0.0;
+			for (int i = fixed - counter; i < fixed; i++)
+				sumP += proportions[i];
+		}
+
+		int p = (counter == 0) ? 1 : (int)Math.ceil(sumP/counter);
+		int fvId = b.getFv().getId();
+		int ovId = b.getOv().getId();
+		int ivId = fvId - (fvId - ovId)*p;
+
+		return this.versions.get(Math.max(ivId - 1, 0));
+	}
+
+}
@@ -0,0 +1,284 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import it.uniroma2.isw2.milestone1.entities.AnalyzedFile;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Metrics;
+import it.uniroma2.isw2.milestone1.entities.Version;
+
+/*
+ * Checkpoint del replay dei commit, salvato dopo ogni cambio di release in due file:
+ * - rows.bin: righe del dataset già calcolate (senza Buggyness), scritte in coda man mano che le release vengono completate
+ * - state.bin: posizione del replay, impronta dei commit già applicati, versioni già attraversate, dizionari di progetto,
+ *   stato dei file e lunghezza valida di rows.bin; viene sostituito atomicamente ad ogni salvataggio
+ * Un'esecuzione successiva riparte dall'ultimo stato se versioni e commit già applicati sono rimasti invariati.
+ */
+public class ReplayCheckpoint implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(ReplayCheckpoint.class.getName());
+
+	private static final int MAGIC = 0x4D31434B; // "M1CK"
+	private static final int FORMAT_VERSION = 1;
+	private static final String STATE_FILE = "state.bin";
+	private static final String ROWS_FILE = "rows.bin";
+	private static final String STAGING_SUFFIX = ".staging";
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Path statePath;
+	private final Path rowsPath;
+	private final String projectName;
+	private FileChannel rowsChannel;
+	private DataOutputStream rowsOut;
+	private int rowsCount;
+
+	/* Stato letto da state.bin */
+	public static class Snapshot {
+
+		private int versionsIdx;
+		private int commitsIdx;
+		private byte[] commitsDigest;
+		private List<String> versionNames;
+		private List<LocalDateTime> versionDates;
+		private List<AnalyzedFile> files;
+		private long rowsLength;
+		private int rowsCount;
+
+		public int getVersionsIdx() {
+			return versionsIdx;
+		}
+
+		public int getCommitsIdx() {
+			return commitsIdx;
+		}
+
+		public List<AnalyzedFile> getFiles() {
+			return files;
+		}
+
+	}
+
+	/* Impronta incrementale degli sha dei commit, nell'ordine in cui arrivano dallo stream */
+	public static class CommitsDigest {
+
+		private final MessageDigest md;
+		private int count;
+
+		public CommitsDigest() {
+			this.md = newDigest();
+		}
+
+		public void add(Commit c) {
+			this.md.update(c.getSha().getBytes(StandardCharsets.UTF_8));
+			this.count++;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/* Impronta dei commit aggiunti finora; l'impronta incrementale resta aperta */
+		byte[] current() {
+			try {
+				return ((MessageDigest) this.md.clone()).digest();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
+	public ReplayCheckpoint(Path directory, String projectName) throws IOException {
+		Files.createDirectories(directory);
+		this.statePath = directory.resolve(STATE_FILE);
+		this.rowsPath = directory.resolve(ROWS_FILE);
+		this.projectName = projectName;
+	}
+
+	/*
+	 * Legge l'ultimo stato salvato e, se valido, registra nei dizionari (vuoti) i simboli del checkpoint
+	 * con gli stessi id; null se il checkpoint manca o è illeggibile
+	 */
+	public Snapshot load(SymbolTable paths, SymbolTable authors) {
+		if (!Files.exists(this.statePath))
+			return null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.statePath), BUFFER_SIZE))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !this.projectName.equals(in.readUTF()))
+				return null;
+
+			Snapshot s = new Snapshot();
+			s.versionsIdx = in.readInt();
+			s.commitsIdx = in.readInt();
+			s.commitsDigest = new byte[in.readInt()];
+			in.readFully(s.commitsDigest);
+
+			int versionsCount = in.readInt();
+			s.versionNames = new ArrayList<>(versionsCount);
+			s.versionDates = new ArrayList<>(versionsCount);
+			for (int i = 0; i < versionsCount; i++) {
+				s.versionNames.add(in.readUTF());
+				s.versionDates.add(LocalDateTime.parse(in.readUTF()));
+			}
+
+			List<String> pathSymbols = readSymbols(in);
+			List<String> authorSymbols = readSymbols(in);
+
+			int filesCount = in.readInt();
+			s.files = new ArrayList<>(filesCount);
+			for (int i = 0; i < filesCount; i++)
+				s.files.add(AnalyzedFile.readState(in, pathSymbols::get));
+
+			s.rowsLength = in.readLong();
+			s.rowsCount = in.readInt();
+			if (!Files.exists(this.rowsPath) || Files.size(this.rowsPath) < s.rowsLength)
+				return null;
+
+			/* I dizionari vengono popolati solo a lettura completata, per non lasciarli a metà */
+			for (String p : pathSymbols)
+				paths.intern(p);
+			for (String a : authorSymbols)
+				authors.intern(a);
+			return s;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Checkpoint {0} non leggibile, il dataset verrà ricostruito da zero", this.statePath);
+			return null;
+		}
+	}
+
+	/* Il replay può ripartire dal checkpoint solo se le versioni già attraversate sono le stesse (i commit vedi matchesCommits) */
+	public boolean matches(Snapshot s, List<Version> versions, int targetVersionIdx) {
+		if (s.versionsIdx > targetVersionIdx || s.versionNames.size() != s.versionsIdx + 1 || s.versionsIdx + 1 > versions.size())
+			return false;
+
+		for (int i = 0; i <= s.versionsIdx; i++) {
+			Version v = versions.get(i);
+			if (!v.getName().equals(s.versionNames.get(i)) || !v.getReleaseDate().equals(s.versionDates.get(i)))
+				return false;
+		}
+
+		return true;
+	}
+
+	/* digest: impronta dei commit ricevuti fino a quello del checkpoint (commitsIdx) compreso */
+	public boolean matchesCommits(Snapshot s, CommitsDigest digest) {
+		return digest.getCount() == s.commitsIdx + 1 && Arrays.equals(s.commitsDigest, digest.current());
+	}
+
+	/* Righe salvate nel checkpoint, nell'ordine in cui sono state calcolate, copiate senza decodificarle */
+	public void copyRows(Snapshot s, RowSpill spill) throws IOException {
+		try (InputStream in = Files.newInputStream(this.rowsPath)) {
+			spill.appendEncoded(in, s.rowsLength, s.rowsCount);
+		}
+	}
+
+	/* Apre rows.bin in scrittura, scartando quanto scritto dopo l'ultimo stato salvato (0: nessun checkpoint valido) */
+	public void start(Snapshot resumed) throws IOException {
+		long length = (resumed == null) ? 0 : resumed.rowsLength;
+		this.rowsCount = (resumed == null) ? 0 : resumed.rowsCount;
+		this.rowsChannel = FileChannel.open(this.rowsPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		this.rowsChannel.truncate(length);
+		this.rowsChannel.position(length);
+		this.rowsOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.rowsChannel), BUFFER_SIZE));
+		if (resumed == null)
+			Files.deleteIfExists(this.statePath);
+	}
+
+	public void appendRows(List<Metrics> release) throws IOException {
+		for (Metrics m : release)
+			m.writeTo(this.rowsOut);
+		this.rowsCount += release.size();
+	}
+
+	/*
+	 * Salva lo stato dopo il cambio di release: versionsIdx è la release corrente, commitsIdx il prossimo commit,
+	 * già confrontato con la data della release successiva e compreso nell'impronta dei commit ricevuti
+	 */
+	public void save(int versionsIdx, int commitsIdx, List<Version> versions, CommitsDigest commits,
+			SymbolTable paths, SymbolTable authors, List<AnalyzedFile> files) throws IOException {
+		this.rowsOut.flush();
+		this.rowsChannel.force(false);
+		long rowsLength = this.rowsChannel.position();
+
+		Path staging = this.statePath.resolveSibling(STATE_FILE + STAGING_SUFFIX);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(staging), BUFFER_SIZE))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(this.projectName);
+			out.writeInt(versionsIdx);
+			out.writeInt(commitsIdx);
+			byte[] commitsDigest = commits.current();
+			out.writeInt(commitsDigest.length);
+			out.write(commitsDigest);
+
+			out.writeInt(versionsIdx + 1);
+			for (Version v : versions.subList(0, versionsIdx + 1)) {
+				out.writeUTF(v.getName());
+				out.writeUTF(v.getReleaseDate().toString());
+			}
+
+			writeSymbols(out, paths.symbols());
+			writeSymbols(out, authors.symbols());
+
+			out.writeInt(files.size());
+			for (AnalyzedFile f : files)
+				f.writeState(out);
+
+			out.writeLong(rowsLength);
+			out.writeInt(this.rowsCount);
+		}
+		Files.move(staging, this.statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static List<String> readSymbols(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<String> symbols = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			symbols.add(in.readUTF());
+		return Collections.unmodifiableList(symbols);
+	}
+
+	private static void writeSymbols(DataOutputStream out, List<String> symbols) throws IOException {
+		out.writeInt(symbols.size());
+		for (String s : symbols)
+			out.writeUTF(s);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.rowsOut != null)
+			this.rowsOut.close();
+	}
+
+}
@@ -1,72 +1,162 @@
 package it.uniroma2.isw2.milestone1.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
+import it.uniroma2.isw2.milestone1.exceptions.JiraResponseException;
 import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.Response;
 
 public class RestHelper {
+
+	public interface JsonDecoder<T> {
+		T decode(JsonReader reader) throws IOException;
+	}
 		
+	private static final Logger LOGGER = Logger.getLogger(RestHelper.class.getName());
+	
 	private static final String RATE_LIMIT_EXCEEDED = "API rate limit exceeded for user ID";
+	private static final String SECONDARY_RATE_LIMIT = "secondary rate limit";
+	private static final int HTTP_NOT_MODIFIED = 304;
+	private static final int HTTP_FORBIDDEN = 403;
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+	
+	/* Esito delle letture dalla cache di Jira, per le metriche */
+	private static final String CACHE_JIRA = "jira";
+	private static final String RESULT_HIT = "hit"; // copia valida
+	private static final String RESULT_OFFLINE = "offline"; // copia usata in modalità offline
+	private static final String RESULT_REVALIDATED = "revalidated"; // copia confermata dal server (304)
+	private static final String RESULT_MISS = "miss"; // risposta scaricata
+	private static final String RESULT_STALE = "stale"; // copia scaduta usata perché Jira non è disponibile
 	
 	private RestHelper() {
 		
 	}
 	
-	public static JsonObject getJSONObject(String url) throws IOException {
-		OkHttpClient client = new OkHttpClient();
-		Request request = new Request.Builder().url(url).build();
-		Response response = client.newCall(request).execute();
-		return JsonParser.parseString(response.body().string()).getAsJsonObject();
+	/*
+	 * Risposte di Jira: una copia in cache ancora valida (o qualsiasi copia in modalità offline) evita la richiesta;
+	 * altrimenti la richiesta è condizionale e una risposta 304 rinnova la copia in cache.
+	 * Se Jira non è raggiungibile o risponde con un errore del server viene usata la copia scaduta, quando presente.
+	 */
+	public static JsonObject getJSONObject(String url, JiraCache cache, String key) throws IOException {
+		JiraCache.Entry cached = cache.get(key, url);
+		if (cached != null && (cached.isFresh() || cache.isOffline())) {
+			countJiraLookup(cached.isFresh() ? RESULT_HIT : RESULT_OFFLINE);
+			return JsonParser.parseString(cached.getBody()).getAsJsonObject();
+		}
+		if (cache.isOffline())
+			throw new IOException(String.format("Risposta %s di Jira non presente in cache (modalità offline)", key));
+		
+		Request.Builder request = new Request.Builder().url(url);
+		if (cached != null && cached.getEtag() != null)
+			request.header("If-None-Match", cached.getEtag());
+		if (cached != null && cached.getLastModified() != null)
+			request.header("If-Modified-Since", cached.getLastModified());
+		
+		try {
+			return HttpTransport.getInstance().execute(request.build(), res -> {
+				if (res.code() == HTTP_NOT_MODIFIED && cached != null) {
+					cache.touch(key, url);
+					countJiraLookup(RESULT_REVALIDATED);
+					return JsonParser.parseString(cached.getBody()).getAsJsonObject();
+				}
+				if (!res.isSuccessful())
+					throw new JiraResponseException(url, res.code());
+				
+				String body = res.body().string();
+				JsonObject json = JsonParser.parseString(body).getAsJsonObject(); // solo le risposte valide finiscono in cache
+				cache.put(key, url, body, res.header("ETag"), res.header("Last-Modified"));
+				countJiraLookup(RESULT_MISS);
+				return json;
+			});
+		} catch (JiraResponseException e) {
+			/* Un errore della richiesta (4xx) non si risolve con la copia scaduta: viene propagato */
+			if (cached == null || !e.isServerError())
+				throw e;
+			return stale(cached, key, e);
+		} catch (IOException e) {
+			if (cached == null)
+				throw e;
+			return stale(cached, key, e);
+		}
 	}
 	
-	public static JsonObject getJSONObject(String url, String token, String cache) throws IOException, RateLimitExceededGithubAPIException {
-		String body = getJSON(url, token, cache);
-		JsonObject obj = JsonParser.parseString(body).getAsJsonObject();
-		if (obj.get("message") != null && obj.get("message").getAsString().startsWith(RATE_LIMIT_EXCEEDED)) {
-			throw new RateLimitExceededGithubAPIException();
-		}
-		if (!Files.exists(Paths.get(cache)) && obj.size() > 0)
-			cacheResponse(cache, body);
-		return obj;
+	private static JsonObject stale(JiraCache.Entry cached, String key, IOException e) {
+		LOGGER.log(Level.WARNING, "Jira non disponibile ({0}), uso la copia scaduta di {1}", new Object[] { e.getMessage(), key });
+		countJiraLookup(RESULT_STALE);
+		return JsonParser.parseString(cached.getBody()).getAsJsonObject();
 	}
 	
-	public static JsonArray getJSONArray(String url, String token, String cache) throws IOException {
-		String body = getJSON(url, token, cache);
-		JsonArray arr = JsonParser.parseString(body).getAsJsonArray();
-		if (!Files.exists(Paths.get(cache)) && arr.size() > 0)
-			cacheResponse(cache, body);
-		return arr;
+	private static void countJiraLookup(String result) {
+		PipelineMetrics.getInstance().increment(PipelineMetrics.CACHE_LOOKUPS, "cache", CACHE_JIRA, "result", result);
 	}
 	
-	private static String getJSON(String url, String token, String cache) throws IOException {
-		Path cachePath = Paths.get(cache);
-
-		if (Files.exists(cachePath)) {
-			return Files.readString(cachePath);
-		} else {
-			OkHttpClient client = new OkHttpClient();
+	public static JsonArray getJSONArray(String url, GithubTokenPool tokens) throws IOException, RateLimitExceededGithubAPIException {
+		return JsonParser.parseString(executeGithub(url, tokens, res -> res.body().string())).getAsJsonArray();
+	}
+	
+	/* Decodifica in streaming il corpo della risposta, senza conservarlo */
+	public static <T> T getDecoded(String url, GithubTokenPool tokens, JsonDecoder<T> decoder) throws IOException, RateLimitExceededGithubAPIException {
+		return executeGithub(url, tokens, res -> decode(res.body().byteStream(), decoder));
+	}
+	
+	public static <T> T decode(InputStream body, JsonDecoder<T> decoder) throws IOException {
+		try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+			return decoder.decode(reader);
+		}
+	}
+	
+	/*
+	 * Esegue la richiesta con il token indicato dal pool; una risposta di rate limit mette in pausa il token
+	 * e la richiesta viene ripetuta con il successivo token disponibile
+	 */
+	private static <T> T executeGithub(String url, GithubTokenPool tokens, HttpTransport.ResponseHandler<T> onSuccess) throws IOException, RateLimitExceededGithubAPIException {
+		while (true) {
+			String token = tokens.acquire();
 			Request req = new Request.Builder().url(url).header("Authorization", "token " + token).build();
-			Response res = client.newCall(req).execute();
-			return res.body().string();
+			AtomicReference<String> error = new AtomicReference<>();
+			AtomicBoolean limited = new AtomicBoolean();
+			T result = HttpTransport.getInstance().execute(req, res -> {
+				tokens.update(token, res);
+				if (res.isSuccessful())
+					return onSuccess.handle(res);
+				error.set(res.body().string());
+				limited.set(res.code() == HTTP_TOO_MANY_REQUESTS || (res.code() == HTTP_FORBIDDEN && isRateLimitExceeded(error.get())));
+				return null;
+			});
+			
+			if (error.get() == null)
+				return result;
+			if (!limited.get())
+				throw new IOException(String.format("Risposta non valida da %s: %s", url, error.get()));
+			PipelineMetrics.getInstance().increment(PipelineMetrics.GITHUB_RATE_LIMITED);
+			tokens.rateLimited(token);
 		}
 	}
 	
-	private static void cacheResponse(String cacheFile, String body) throws IOException {
-		Path cachePath = Paths.get(cacheFile);
-		Files.createDirectories(cachePath.getParent());
-		Files.createFile(cachePath);
-		Files.writeString(cachePath, body, StandardCharsets.UTF_8);
+	private static boolean isRateLimitExceeded(String body) {
+		try {
+			JsonElement json = JsonParser.parseString(body);
+			if (!json.isJsonObject() || json.getAsJsonObject().get("message") == null)
+				return false;
+			String message = json.getAsJsonObject().get("message").getAsString();
+			return message.startsWith(RATE_LIMIT_EXCEEDED) || message.contains(SECONDARY_RATE_LIMIT);
+		} catch (JsonParseException e) {
+			return false;
+		}
 	}
 	
 }
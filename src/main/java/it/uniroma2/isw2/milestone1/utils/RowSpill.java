@@ -0,0 +1,120 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.uniroma2.isw2.milestone1.entities.Metrics;
+import it.uniroma2.isw2.milestone1.entities.Version;
+
+/*
+ * Righe del dataset già calcolate e in attesa della Buggyness, scritte su un file temporaneo una release alla volta
+ * con la stessa codifica di rows.bin del checkpoint (vedi Metrics.writeTo) e rilette in ordine nella scrittura del dataset:
+ * in memoria resta al più la release in lettura. Il file viene cancellato alla chiusura.
+ */
+public class RowSpill implements Closeable {
+
+	private static final String FILE_PREFIX = "milestone1-rows-";
+	private static final String FILE_SUFFIX = ".bin";
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Path path;
+	private final DataOutputStream out;
+	private int rowsCount;
+
+	public RowSpill(String projectName) throws IOException {
+		this.path = Files.createTempFile(FILE_PREFIX + projectName + "-", FILE_SUFFIX);
+		this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.path), BUFFER_SIZE));
+		this.rowsCount = 0;
+	}
+
+	/* Le release vanno aggiunte in ordine di versione */
+	public void append(List<Metrics> release) throws IOException {
+		for (Metrics m : release)
+			m.writeTo(this.out);
+		this.rowsCount += release.size();
+	}
+
+	/* Righe già codificate (quelle del checkpoint), copiate senza decodificarle */
+	public void appendEncoded(InputStream in, long length, int rows) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long remaining = length;
+		while (remaining > 0) {
+			int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (read < 0)
+				throw new EOFException("Righe del checkpoint troncate");
+			this.out.write(buffer, 0, read);
+			remaining -= read;
+		}
+		this.rowsCount += rows;
+	}
+
+	public int getRowsCount() {
+		return this.rowsCount;
+	}
+
+	/* Lettura dalla prima riga: ogni lettura è indipendente dalle altre e restituisce nuove istanze */
+	public Reader reader(List<Version> versions, SymbolTable paths) throws IOException {
+		this.out.flush();
+		return new Reader(versions, paths);
+	}
+
+	public class Reader implements Closeable {
+
+		private final DataInputStream in;
+		private final List<Version> versions;
+		private final SymbolTable paths;
+		private int remaining;
+		private Metrics next; // prima riga non ancora restituita
+
+		private Reader(List<Version> versions, SymbolTable paths) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(RowSpill.this.path), BUFFER_SIZE));
+			this.versions = versions;
+			this.paths = paths;
+			this.remaining = RowSpill.this.rowsCount;
+		}
+
+		/* Righe della release (indice nella lista delle versioni); le release vanno lette in ordine, anche quelle senza righe */
+		public List<Metrics> nextRelease(int versionIdx) throws IOException {
+			List<Metrics> release = new ArrayList<>();
+			while (peek() != null && this.next.getVersion().getId() == versionIdx + 1) {
+				release.add(this.next);
+				this.next = null;
+			}
+			return release;
+		}
+
+		private Metrics peek() throws IOException {
+			if (this.next == null && this.remaining > 0) {
+				this.next = Metrics.readFrom(this.in, id -> this.versions.get(id - 1), this.paths::lookup);
+				this.remaining--;
+			}
+			return this.next;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.out.close();
+		} finally {
+			Files.deleteIfExists(this.path);
+		}
+	}
+
+}
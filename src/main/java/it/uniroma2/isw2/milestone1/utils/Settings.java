@@ -0,0 +1,158 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.time.Duration;
+import java.util.Locale;
+
+public class Settings {
+
+	private static final String PREFIX = "milestone1.";
+
+	private static final String FETCH_PARALLELISM = PREFIX + "fetch.parallelism"; // numero massimo di richieste di dettaglio dei commit in volo
+	private static final int DEFAULT_FETCH_PARALLELISM = 8;
+
+	private static final String HTTP_MAX_REQUESTS_PER_HOST = PREFIX + "http.maxRequestsPerHost"; // connessioni contemporanee verso lo stesso host
+	private static final int DEFAULT_HTTP_MAX_REQUESTS_PER_HOST = 16;
+
+	private static final String HTTP_MAX_RETRIES = PREFIX + "http.maxRetries"; // tentativi ripetuti su timeout e risposte 5xx
+	private static final int DEFAULT_HTTP_MAX_RETRIES = 3;
+
+	private static final String HTTP_RETRY_BACKOFF = PREFIX + "http.retryBackoffMillis"; // attesa iniziale prima di ripetere una richiesta
+	private static final long DEFAULT_HTTP_RETRY_BACKOFF = 500;
+
+	private static final String GITHUB_REQUESTS_PER_SECOND = PREFIX + "github.requestsPerSecond"; // richieste al secondo per ogni token Github (0 = nessun limite)
+	private static final int DEFAULT_GITHUB_REQUESTS_PER_SECOND = 10;
+
+	private static final String GITHUB_WAIT_FOR_RESET = PREFIX + "github.waitForReset"; // attesa del reset quando tutti i token sono esauriti
+	private static final boolean DEFAULT_GITHUB_WAIT_FOR_RESET = true;
+
+	private static final String COMMITS_SOURCE = PREFIX + "commits.source"; // sorgente dei commit: github oppure local
+	private static final String DEFAULT_COMMITS_SOURCE = "github";
+
+	private static final String GIT_REPOSITORIES = PREFIX + "git.repositories"; // cartella dei cloni locali, uno per progetto
+	private static final String DEFAULT_GIT_REPOSITORIES = "repositories";
+
+	private static final String STREAM_CAPACITY = PREFIX + "stream.capacity"; // commit recuperati e non ancora elaborati dal replay
+	private static final int DEFAULT_STREAM_CAPACITY = 1024;
+
+	private static final String METRICS_PARALLEL_THRESHOLD = PREFIX + "metrics.parallelThreshold"; // file di una release oltre i quali le metriche vengono calcolate in parallelo (0 = mai)
+	private static final int DEFAULT_METRICS_PARALLEL_THRESHOLD = 4096;
+
+	private static final String WALK_FORWARD = PREFIX + "walkForward"; // cutoff del walk-forward: "all" oppure numeri di release separati da virgole (vuoto = nessuno)
+	private static final String DEFAULT_WALK_FORWARD = "";
+
+	private static final String COLUMNAR_OUTPUT = PREFIX + "output.columnar"; // dataset anche nel formato binario a colonne (vedi ColumnarDataset)
+	private static final boolean DEFAULT_COLUMNAR_OUTPUT = false;
+
+	private static final String PROPORTION_WINDOW = PREFIX + "proportion.window"; // numero di bug fixati su cui mediare P (0 = tutti)
+	private static final int DEFAULT_PROPORTION_WINDOW = 0;
+
+	private static final String PROJECTS_PARALLELISM = PREFIX + "projects.parallelism"; // numero di progetti costruiti contemporaneamente
+	private static final int DEFAULT_PROJECTS_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	private static final String JIRA_CACHE_TTL = PREFIX + "jira.cacheTtlMinutes"; // validità delle risposte di Jira in cache
+	private static final long DEFAULT_JIRA_CACHE_TTL = 360;
+
+	private static final String JIRA_OFFLINE = PREFIX + "jira.offline"; // risposte di Jira lette soltanto dalla cache
+	private static final boolean DEFAULT_JIRA_OFFLINE = false;
+
+	private static final String JIRA_PARALLELISM = PREFIX + "jira.parallelism"; // pagine di bug richieste contemporaneamente
+	private static final int DEFAULT_JIRA_PARALLELISM = 4;
+
+	private static final String CHECKPOINT = PREFIX + "checkpoint"; // ripresa del replay dall'ultimo checkpoint salvato
+	private static final boolean DEFAULT_CHECKPOINT = true;
+
+	private static final String CHECKPOINT_FOLDER = PREFIX + "checkpoint.folder"; // cartella dei checkpoint, uno per progetto
+	private static final String DEFAULT_CHECKPOINT_FOLDER = ".cache/checkpoint";
+
+	private Settings() {
+
+	}
+
+	/* Numero massimo di commit recuperati contemporaneamente (1 = recupero seriale) */
+	public static int fetchParallelism() {
+		return Math.max(1, Integer.getInteger(FETCH_PARALLELISM, DEFAULT_FETCH_PARALLELISM));
+	}
+
+	public static int httpMaxRequestsPerHost() {
+		return Math.max(1, Integer.getInteger(HTTP_MAX_REQUESTS_PER_HOST, DEFAULT_HTTP_MAX_REQUESTS_PER_HOST));
+	}
+
+	public static int httpMaxRetries() {
+		return Math.max(0, Integer.getInteger(HTTP_MAX_RETRIES, DEFAULT_HTTP_MAX_RETRIES));
+	}
+
+	/* Il backoff raddoppia ad ogni tentativo */
+	public static long httpRetryBackoffMillis() {
+		return Math.max(0, Long.getLong(HTTP_RETRY_BACKOFF, DEFAULT_HTTP_RETRY_BACKOFF));
+	}
+
+	/* Capacità della coda tra il recupero dei commit e il replay */
+	public static int streamCapacity() {
+		return Math.max(1, Integer.getInteger(STREAM_CAPACITY, DEFAULT_STREAM_CAPACITY));
+	}
+
+	/* Con meno file il costo della ripartizione tra i core supera il guadagno */
+	public static int metricsParallelThreshold() {
+		return Math.max(0, Integer.getInteger(METRICS_PARALLEL_THRESHOLD, DEFAULT_METRICS_PARALLEL_THRESHOLD));
+	}
+
+	/* Un dataset aggiuntivo per ogni cutoff, con le release precedenti (vedi DatasetBuilder) */
+	public static String walkForward() {
+		return System.getProperty(WALK_FORWARD, DEFAULT_WALK_FORWARD).trim().toLowerCase(Locale.ROOT);
+	}
+
+	public static boolean columnarOutput() {
+		return Boolean.parseBoolean(System.getProperty(COLUMNAR_OUTPUT, String.valueOf(DEFAULT_COLUMNAR_OUTPUT)));
+	}
+
+	/* Proportion incrementale (0) o a finestra mobile sugli ultimi N bug fixati */
+	public static int proportionWindow() {
+		return Math.max(0, Integer.getInteger(PROPORTION_WINDOW, DEFAULT_PROPORTION_WINDOW));
+	}
+
+	/* false: il dataset viene ricostruito dal primo commit e il checkpoint riscritto da zero */
+	public static boolean checkpointEnabled() {
+		return Boolean.parseBoolean(System.getProperty(CHECKPOINT, String.valueOf(DEFAULT_CHECKPOINT)));
+	}
+
+	/* Il checkpoint di un progetto è nella sottocartella con il nome del progetto */
+	public static String checkpointFolder() {
+		return System.getProperty(CHECKPOINT_FOLDER, DEFAULT_CHECKPOINT_FOLDER);
+	}
+
+	public static int projectsParallelism() {
+		return Math.max(1, Integer.getInteger(PROJECTS_PARALLELISM, DEFAULT_PROJECTS_PARALLELISM));
+	}
+
+	/* 0: ogni risposta in cache viene rivalidata con una richiesta condizionale */
+	public static Duration jiraCacheTtl() {
+		return Duration.ofMinutes(Math.max(0, Long.getLong(JIRA_CACHE_TTL, DEFAULT_JIRA_CACHE_TTL)));
+	}
+
+	public static boolean jiraOffline() {
+		return Boolean.parseBoolean(System.getProperty(JIRA_OFFLINE, String.valueOf(DEFAULT_JIRA_OFFLINE)));
+	}
+
+	public static int jiraParallelism() {
+		return Math.max(1, Integer.getInteger(JIRA_PARALLELISM, DEFAULT_JIRA_PARALLELISM));
+	}
+
+	public static int githubRequestsPerSecond() {
+		return Math.max(0, Integer.getInteger(GITHUB_REQUESTS_PER_SECOND, DEFAULT_GITHUB_REQUESTS_PER_SECOND));
+	}
+
+	/* false: con tutti i token esauriti la costruzione termina con RateLimitExceededGithubAPIException */
+	public static boolean githubWaitForReset() {
+		return Boolean.parseBoolean(System.getProperty(GITHUB_WAIT_FOR_RESET, String.valueOf(DEFAULT_GITHUB_WAIT_FOR_RESET)));
+	}
+
+	public static String commitSource() {
+		return System.getProperty(COMMITS_SOURCE, DEFAULT_COMMITS_SOURCE).trim().toLowerCase(Locale.ROOT);
+	}
+
+	/* Il clone di un progetto è nella sottocartella con il nome del progetto in minuscolo */
+	public static String gitRepositories() {
+		return System.getProperty(GIT_REPOSITORIES, DEFAULT_GIT_REPOSITORIES);
+	}
+
+}
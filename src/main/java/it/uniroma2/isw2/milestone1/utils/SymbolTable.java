@@ -0,0 +1,45 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Dizionario di progetto: associa ad ogni stringa (percorso di un file, nome di un autore) un id intero denso.
+ * Ogni stringa viene conservata una sola volta e riconvertita soltanto in fase di output.
+ */
+public class SymbolTable {
+
+	private final Map<String, Integer> ids;
+	private final List<String> symbols;
+
+	public SymbolTable() {
+		this.ids = new HashMap<>();
+		this.symbols = new ArrayList<>();
+	}
+
+	public synchronized int intern(String symbol) {
+		Integer id = this.ids.get(symbol);
+		if (id == null) {
+			id = this.symbols.size();
+			this.ids.put(symbol, id);
+			this.symbols.add(symbol);
+		}
+		return id;
+	}
+
+	public synchronized String lookup(int id) {
+		return this.symbols.get(id);
+	}
+
+	public synchronized int size() {
+		return this.symbols.size();
+	}
+
+	/* Copia dei simboli in ordine di id */
+	public synchronized List<String> symbols() {
+		return new ArrayList<>(this.symbols);
+	}
+
+}
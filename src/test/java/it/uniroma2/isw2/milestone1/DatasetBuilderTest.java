@@ -0,0 +1,277 @@
+package it.uniroma2.isw2.milestone1;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import it.uniroma2.isw2.milestone1.TestFixtures.ListSource;
+import it.uniroma2.isw2.milestone1.entities.Bug;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Diff;
+import it.uniroma2.isw2.milestone1.entities.Version;
+import it.uniroma2.isw2.milestone1.utils.JiraHelper;
+import it.uniroma2.isw2.milestone1.utils.SymbolTable;
+
+/**
+ * Unit test for the dataset and walk-forward splits built from a small in-memory history.
+ */
+public class DatasetBuilderTest extends TempDirectoryTestCase {
+
+	private static final String PROJECT = "TEST";
+	private static final String WALK_FORWARD = "milestone1.walkForward";
+	private static final String CHECKPOINT = "milestone1.checkpoint";
+	private static final String CHECKPOINT_FOLDER = "milestone1.checkpoint.folder";
+	private static final String COLUMNAR = "milestone1.output.columnar";
+	private static final String PARALLEL_THRESHOLD = "milestone1.metrics.parallelThreshold";
+	private static final String FILE_A = "src/main/java/A.java";
+	private static final String FILE_B = "src/main/java/B.java";
+	private static final String RESUMED = "Ripresa dal checkpoint: versione {0}, commit {1}"; // messaggi del log di DatasetBuilder
+	private static final String CHANGED = "Commit diversi da quelli del checkpoint, replay dal primo commit";
+
+	private SymbolTable paths;
+	private SymbolTable authors;
+	private List<Version> versions;
+	private List<Bug> bugs;
+
+	private static class ListJiraHelper extends JiraHelper {
+
+		private final List<Version> versions;
+		private final List<Bug> bugs;
+
+		ListJiraHelper(List<Version> versions, List<Bug> bugs) {
+			super(PROJECT);
+			this.versions = versions;
+			this.bugs = bugs;
+		}
+
+		@Override
+		public List<Version> retrieveVersions() {
+			return this.versions;
+		}
+
+		@Override
+		public List<Bug> retrieveBugs(List<Version> versions) {
+			return this.bugs;
+		}
+
+	}
+
+	/* Sei release mensili (target: le prime tre) e un bug aperto e iniettato nella prima release, fixato nella seconda */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		System.setProperty(CHECKPOINT, "false");
+		System.setProperty(CHECKPOINT_FOLDER, this.getDirectory().resolve("checkpoint").toString());
+		System.setProperty(COLUMNAR, "false");
+
+		this.paths = new SymbolTable();
+		this.authors = new SymbolTable();
+		this.versions = TestFixtures.monthlyVersions(6);
+
+		JsonObject fields = new JsonObject();
+		JsonArray fixVersions = new JsonArray();
+		fixVersions.add(TestFixtures.versionJson(this.versions.get(1)));
+		fields.add("fixVersions", fixVersions);
+		fields.addProperty("created", "2019-12-20T10:00:00.000+0000");
+		JsonArray affectedVersions = new JsonArray();
+		affectedVersions.add(TestFixtures.versionJson(this.versions.get(0)));
+		fields.add("versions", affectedVersions);
+		JsonObject issue = new JsonObject();
+		issue.addProperty("key", PROJECT + "-1");
+		issue.add("fields", fields);
+		this.bugs = new ArrayList<>(Collections.singletonList(Bug.fromJsonObject(issue, this.versions)));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		System.clearProperty(WALK_FORWARD);
+		System.clearProperty(CHECKPOINT);
+		System.clearProperty(CHECKPOINT_FOLDER);
+		System.clearProperty(COLUMNAR);
+		System.clearProperty(PARALLEL_THRESHOLD);
+		super.tearDown();
+	}
+
+	private Commit commit(String date, String message, String... files) {
+		Commit c = new Commit();
+		c.setSha(date);
+		c.setDate(LocalDate.parse(date).atTime(12, 0));
+		c.setMessage(message);
+		c.setAuthorId(this.authors.intern("author"));
+		for (String f : files) {
+			Diff d = new Diff();
+			d.setFileId(this.paths.intern(f));
+			d.setAddedLines(10);
+			d.setDeletedLines(2);
+			c.getDiffs().add(d);
+		}
+		c.setFileIds(c.getDiffs().stream().mapToInt(Diff::getFileId).distinct().toArray());
+		return c;
+	}
+
+	/* B viene collegato al bug da un commit successivo alla chiusura del cutoff 1 (1 febbraio) */
+	private List<Commit> history() {
+		return new ArrayList<>(Arrays.asList(
+				commit("2020-01-10", "initial import", FILE_A, FILE_B),
+				commit("2020-01-20", PROJECT + "-1: fix", FILE_A),
+				commit("2020-02-10", PROJECT + "-1: follow-up", FILE_B),
+				commit("2020-03-10", "change", FILE_A),
+				commit("2020-04-10", "change", FILE_B),
+				commit("2020-05-10", "change", FILE_A)));
+	}
+
+	/* I collegamenti dei bug di una costruzione precedente non devono arrivare alla successiva */
+	private DatasetBuilder builder(List<Commit> commits) {
+		for (Bug b : this.bugs)
+			b.clearInfectedFiles();
+		return new DatasetBuilder(PROJECT, this.getDirectory().toString() + "/", this.paths, this.authors,
+				new ListSource(commits), new ListJiraHelper(this.versions, this.bugs));
+	}
+
+	/* Messaggi del log di DatasetBuilder (non formattati) durante la costruzione */
+	private List<String> build(List<Commit> commits) throws Exception {
+		List<String> messages = new ArrayList<>();
+		Handler handler = new Handler() {
+
+			@Override
+			public void publish(LogRecord r) {
+				messages.add(r.getMessage());
+			}
+
+			@Override
+			public void flush() {
+				// nessun buffer
+			}
+
+			@Override
+			public void close() {
+				// nessuna risorsa
+			}
+
+		};
+		Logger logger = Logger.getLogger(DatasetBuilder.class.getName());
+		logger.addHandler(handler);
+		try {
+			this.builder(commits).build();
+		} finally {
+			logger.removeHandler(handler);
+		}
+		return messages;
+	}
+
+	private String dataset() throws IOException {
+		return new String(Files.readAllBytes(this.getDirectory().resolve(PROJECT + "_metrics.csv")), StandardCharsets.UTF_8);
+	}
+
+	/* Righe "VersionId,Name,Buggyness" del csv */
+	private List<String> rows(String fileName) throws IOException {
+		List<String> rows = new ArrayList<>();
+		List<String> lines = Files.readAllLines(this.getDirectory().resolve(fileName), StandardCharsets.UTF_8);
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split(",");
+			rows.add(fields[0] + "," + fields[2] + "," + fields[fields.length - 1]);
+		}
+		return rows;
+	}
+
+	public void testWalkForwardLabelsOnlyWhatIsKnownAtTheCutoff() throws Exception {
+		System.setProperty(WALK_FORWARD, "1,5");
+		this.builder(this.history()).build();
+
+		/* Dataset principale: prime tre release, B buggy grazie al commit di febbraio */
+		assertEquals(Arrays.asList(
+				"1," + FILE_A + ",Y", "1," + FILE_B + ",Y",
+				"2," + FILE_A + ",N", "2," + FILE_B + ",N",
+				"3," + FILE_A + ",N", "3," + FILE_B + ",N"), rows(PROJECT + "_metrics.csv"));
+
+		/* Cutoff 1: soltanto la prima release, senza il collegamento di B successivo al 1 febbraio */
+		assertEquals(Arrays.asList("1," + FILE_A + ",Y", "1," + FILE_B + ",N"), rows(PROJECT + "_walkforward_1.csv"));
+
+		/* Cutoff 5, oltre il target: la quinta release resta aperta a fine storia e viene chiusa comunque */
+		List<String> cutoff5 = rows(PROJECT + "_walkforward_5.csv");
+		assertEquals(10, cutoff5.size());
+		assertEquals("1," + FILE_B + ",Y", cutoff5.get(1));
+		assertEquals("5," + FILE_B + ",N", cutoff5.get(9));
+	}
+
+	public void testCheckpointIsResumedOnlyForTheSameHistory() throws Exception {
+		/* Storia riscritta: il fix tocca anche B */
+		List<Commit> changed = this.history();
+		changed.set(1, commit("2020-01-21", PROJECT + "-1: fix", FILE_A, FILE_B));
+
+		this.build(changed);
+		String expectedChanged = this.dataset();
+		this.build(this.history());
+		String expected = this.dataset();
+		assertFalse(expected.equals(expectedChanged));
+
+		System.setProperty(CHECKPOINT, "true");
+		assertFalse(this.build(this.history()).contains(RESUMED));
+		assertTrue(this.build(this.history()).contains(RESUMED));
+		assertEquals(expected, this.dataset());
+
+		List<String> logged = this.build(changed);
+		assertTrue(logged.contains(CHANGED));
+		assertFalse(logged.contains(RESUMED));
+		assertEquals(expectedChanged, this.dataset());
+
+		/* I checkpoint salvati dal nuovo replay hanno l'impronta della storia riscritta */
+		assertTrue(this.build(changed).contains(RESUMED));
+		assertEquals(expectedChanged, this.dataset());
+	}
+
+	/* Un commit al giorno per quattro mesi, ciascuno su alcuni dei 300 file; uno su dieci collegato al bug */
+	private List<Commit> largeHistory() {
+		Random random = new Random(11);
+		List<Commit> commits = new ArrayList<>();
+		for (int day = 0; day < 120; day++) {
+			String[] files = new String[1 + random.nextInt(20)];
+			for (int i = 0; i < files.length; i++)
+				files[i] = "src/main/java/F" + random.nextInt(300) + ".java";
+			String message = (day % 10 == 0) ? PROJECT + "-1: fix" : "change";
+			commits.add(commit(LocalDate.of(2020, 1, 2).plusDays(day).toString(), message, files));
+		}
+		return commits;
+	}
+
+	private String arff() throws IOException {
+		return new String(Files.readAllBytes(this.getDirectory().resolve(PROJECT + "_metrics.arff")), StandardCharsets.UTF_8);
+	}
+
+	public void testParallelMetricsMatchTheSerialOnes() throws Exception {
+		System.setProperty(PARALLEL_THRESHOLD, String.valueOf(Integer.MAX_VALUE));
+		this.builder(this.largeHistory()).build();
+		String serialCsv = this.dataset();
+		String serialArff = this.arff();
+
+		System.setProperty(PARALLEL_THRESHOLD, "1");
+		this.builder(this.largeHistory()).build();
+		assertEquals(serialCsv, this.dataset());
+		assertEquals(serialArff, this.arff());
+		assertTrue(serialCsv.split("\n").length > 300);
+	}
+
+	public void testHistoryEndingBeforeTargetFails() {
+		List<Commit> commits = this.history().subList(0, 3);
+		try {
+			this.builder(commits).build();
+			fail();
+		} catch (Exception e) {
+			assertTrue(e instanceof IOException);
+			assertTrue(e.getMessage().contains("terminano prima della release"));
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package it.uniroma2.isw2.milestone1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+/**
+ * Base test case with a temporary directory, created before each test and deleted with its content afterwards.
+ */
+public abstract class TempDirectoryTestCase extends TestCase {
+
+	private Path directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		this.directory = Files.createTempDirectory(getClass().getSimpleName());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (this.directory != null)
+			deleteRecursively(this.directory);
+	}
+
+	protected Path getDirectory() {
+		return this.directory;
+	}
+
+	/* Prima il contenuto, poi le cartelle che lo contengono */
+	private static void deleteRecursively(Path root) throws IOException {
+		try (Stream<Path> files = Files.walk(root)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+}
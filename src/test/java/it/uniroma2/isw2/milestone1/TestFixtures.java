@@ -0,0 +1,80 @@
+package it.uniroma2.isw2.milestone1;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Version;
+import it.uniroma2.isw2.milestone1.utils.CommitSource;
+
+/**
+ * Fixtures shared by the tests: monthly versions and an in-memory commit source.
+ */
+public final class TestFixtures {
+
+	private TestFixtures() {
+
+	}
+
+	/* Release mensili "1.0", "1.1", ... dal 1 gennaio 2020, con id pari alla posizione + 1 */
+	public static List<Version> monthlyVersions(int count) {
+		List<Version> versions = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Version v = new Version("1." + i, LocalDate.of(2020, 1, 1).plusMonths(i).atStartOfDay());
+			v.setId(i + 1);
+			versions.add(v);
+		}
+		return versions;
+	}
+
+	/* Versione come compare nei campi di un issue di Jira */
+	public static JsonObject versionJson(Version v) {
+		JsonObject json = new JsonObject();
+		json.addProperty("name", v.getName());
+		json.addProperty("releaseDate", v.getReleaseDate().toLocalDate().toString());
+		return json;
+	}
+
+	/* Sorgente che restituisce una lista di commit già pronta, oppure l'errore indicato */
+	public static class ListSource implements CommitSource {
+
+		private final List<Commit> commits;
+		private final Throwable failure;
+		private boolean closed;
+
+		public ListSource(List<Commit> commits) {
+			this(commits, null);
+		}
+
+		/* failure: IOException o Error lanciato da retrieveCommits */
+		public ListSource(List<Commit> commits, Throwable failure) {
+			this.commits = commits;
+			this.failure = failure;
+		}
+
+		@Override
+		public List<Commit> retrieveCommits(LocalDateTime targetDate) throws IOException {
+			if (this.failure instanceof Error)
+				throw (Error) this.failure;
+			if (this.failure != null)
+				throw (IOException) this.failure;
+			return new ArrayList<>(this.commits);
+		}
+
+		public boolean isClosed() {
+			return this.closed;
+		}
+
+		@Override
+		public void close() {
+			this.closed = true;
+		}
+
+	}
+
+}
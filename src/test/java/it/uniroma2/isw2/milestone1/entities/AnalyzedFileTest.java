@@ -0,0 +1,80 @@
+package it.uniroma2.isw2.milestone1.entities;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the change set size of a file, across commits and checkpoint state.
+ */
+public class AnalyzedFileTest extends TestCase {
+
+	private static final LocalDateTime BIRTH = LocalDateTime.of(2011, 12, 7, 0, 0);
+
+	private static Commit commit(int id, int... fileIds) {
+		Commit c = new Commit();
+		c.setId(id);
+		c.setAuthorId(id % 2);
+		c.setFileIds(fileIds);
+		return c;
+	}
+
+	private static AnalyzedFile touched(Commit... commits) {
+		AnalyzedFile f = new AnalyzedFile(1, "A.java", BIRTH);
+		for (Commit c : commits) {
+			f.insertCommit(c);
+			f.updateChurn(3, 1);
+		}
+		return f;
+	}
+
+	private static Version version(int id) {
+		Version v = new Version("1." + id, BIRTH.plusMonths(id));
+		v.setId(id);
+		return v;
+	}
+
+	public void testChangeSetSizeIsTheUnionOfTheCommits() {
+		Commit shared = commit(1, 1, 2, 3);
+		AnalyzedFile f = touched(shared, shared, commit(2, 3, 1, 4), commit(3, 1));
+
+		Metrics m = f.computeMetrics(version(1), BIRTH.plusMonths(1));
+		assertEquals(3, m.getNumberOfRevisions());
+		assertEquals(2, m.getNumberOfAuthors());
+		assertEquals(4, m.getChangeSetSize());
+
+		/* La release successiva riparte da zero */
+		f.insertCommit(commit(4, 1, 5));
+		f.updateChurn(1, 0);
+		assertEquals(2, f.computeMetrics(version(2), BIRTH.plusMonths(2)).getChangeSetSize());
+	}
+
+	public void testStateKeepsTheChangeSet() throws IOException {
+		AnalyzedFile f = touched(commit(1, 1, 2, 3), commit(2, 3, 1, 4));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		f.writeState(new DataOutputStream(bytes));
+		AnalyzedFile restored = AnalyzedFile.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), id -> "A.java");
+
+		restored.insertCommit(commit(3, 1, 6));
+		restored.updateChurn(1, 0);
+		assertEquals(5, restored.computeMetrics(version(1), BIRTH.plusMonths(1)).getChangeSetSize());
+	}
+
+	public void testStateStoresTheDistinctChangeSet() throws IOException {
+		AnalyzedFile f = touched(commit(1, 1, 2, 3), commit(2, 3, 1, 4));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		f.writeState(new DataOutputStream(bytes));
+		AnalyzedFile restored = AnalyzedFile.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), id -> "A.java");
+
+		/* Nessun commit dopo il ripristino: il change set salvato è l'unico della release */
+		assertEquals(4, restored.computeMetrics(version(1), BIRTH.plusMonths(1)).getChangeSetSize());
+	}
+
+}
@@ -0,0 +1,51 @@
+package it.uniroma2.isw2.milestone1.entities;
+
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the buffered row encoding matches String.format byte for byte.
+ */
+public class MetricsTest extends TestCase {
+
+	public void testAppendToMatchesToString() {
+		Version version = new Version("4.0.0", LocalDateTime.of(2011, 12, 7, 0, 0));
+		version.setId(1);
+
+		char decimalSeparator = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			Metrics m = new Metrics();
+			m.setVersion(version);
+			m.setName("bookkeeper-server/src/main/java/org/apache/bookkeeper/Foo.java");
+			m.setSize(random.nextInt(10000));
+			m.setAverageLOCAdded((double) random.nextInt(100000) / (1 + random.nextInt(5000)));
+			m.setAverageChurn(random.nextDouble() * Math.pow(10, random.nextInt(12) - 5));
+			m.setAge(random.nextInt(500));
+			m.setBuggyness(random.nextBoolean());
+
+			sb.setLength(0);
+			m.appendTo(sb, decimalSeparator);
+			assertEquals(m.toString(), sb.toString());
+		}
+	}
+
+	public void testRoundingCarry() {
+		Metrics m = new Metrics();
+		m.setVersion(new Version("1", LocalDateTime.of(2011, 1, 1, 0, 0)));
+		m.setName("A.java");
+		m.setAverageLOCAdded(9.99999995);
+		m.setAverageChurn(0.00000005);
+		m.setBuggyness(false);
+
+		StringBuilder sb = new StringBuilder();
+		m.appendTo(sb, '.');
+		assertEquals("0,1,A.java,0,0,0,0,0,10.0000000,0,0,0.0000001,0,0,N", sb.toString());
+	}
+
+}
@@ -0,0 +1,39 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the bug key index.
+ */
+public class BugKeyIndexTest extends TestCase {
+
+	public void testExtractKeysMatchesWholeNumbers() {
+		assertEquals(Arrays.asList("BOOKKEEPER-10", "BOOKKEEPER-2"),
+				Arrays.asList(BugKeyIndex.extractKeys("BOOKKEEPER-10: fix (see also BOOKKEEPER-2, BOOKKEEPER-10)").toArray()));
+	}
+
+	public void testCommitsFor() {
+		Commit c1 = commit("BOOKKEEPER-1: first");
+		Commit c2 = commit("BOOKKEEPER-10 second");
+
+		BugKeyIndex index = new BugKeyIndex();
+		index.addAll(Arrays.asList(c1, c2));
+
+		assertEquals(Collections.singletonList(c1), index.commitsFor("BOOKKEEPER-1"));
+		assertEquals(Collections.singletonList(c2), index.commitsFor("BOOKKEEPER-10"));
+		List<Commit> none = index.commitsFor("BOOKKEEPER-100");
+		assertTrue(none.isEmpty());
+	}
+
+	private static Commit commit(String message) {
+		Commit c = new Commit();
+		c.setMessage(message);
+		return c;
+	}
+
+}
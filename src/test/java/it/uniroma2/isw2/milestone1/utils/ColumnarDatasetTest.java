@@ -0,0 +1,124 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import it.uniroma2.isw2.milestone1.entities.Metrics;
+import it.uniroma2.isw2.milestone1.entities.Version;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the binary columnar dataset: writer and memory-mapped reader.
+ */
+public class ColumnarDatasetTest extends TestCase {
+
+	private static final int ROWS = 3000; // oltre la capacità iniziale delle colonne
+
+	private static Metrics metrics(Version version, int i) {
+		Metrics m = new Metrics();
+		m.setVersion(version);
+		m.setName("src/main/java/File" + (i % 7) + ".java");
+		m.setSize(i);
+		m.setNumberOfRevisions(i + 1);
+		m.setNumberOfAuthors(i + 2);
+		m.setLOCAdded(i + 3);
+		m.setMaxLOCAdded(i + 4);
+		m.setAverageLOCAdded(i / 3.0);
+		m.setChurn(-i);
+		m.setMaxChurn(i + 5);
+		m.setAverageChurn(-i / 7.0);
+		m.setChangeSetSize(i + 6);
+		m.setAge(i * 1_000_000_000L);
+		m.setBuggyness(i % 3 == 0);
+		return m;
+	}
+
+	public void testRoundTrip() throws IOException {
+		Version first = new Version("4.0.0", LocalDateTime.of(2011, 12, 7, 0, 0));
+		first.setId(1);
+		Version second = new Version("4.1.0", LocalDateTime.of(2012, 6, 12, 0, 0));
+		second.setId(2);
+
+		Path path = Files.createTempFile("milestone1-dataset", "." + ColumnarDataset.EXTENSION);
+		try {
+			try (ColumnarDatasetWriter writer = new ColumnarDatasetWriter(path)) {
+				for (int i = 0; i < ROWS; i++)
+					writer.add(metrics((i < ROWS / 2) ? first : second, i));
+			}
+
+			ColumnarDataset dataset = ColumnarDataset.open(path);
+			assertEquals(ROWS, dataset.getRowCount());
+			assertEquals(Arrays.asList(Metrics.CSV_HEADER.trim().split(",")), dataset.getColumnNames());
+			assertEquals(ColumnarDataset.Type.DICTIONARY, dataset.getType("Name"));
+			assertEquals(Arrays.asList("4.0.0", "4.1.0"), dataset.getDictionary("Version"));
+			assertEquals(7, dataset.getDictionary("Name").size());
+
+			for (int i = 0; i < ROWS; i++) {
+				Metrics m = metrics((i < ROWS / 2) ? first : second, i);
+				assertEquals(m.getVersion().getId(), dataset.getInts("VersionId").get(i));
+				assertEquals(m.getVersion().getName(), dataset.getString("Version", i));
+				assertEquals(m.getName(), dataset.getString("Name", i));
+				assertEquals(m.getSize(), dataset.getInts("Size").get(i));
+				assertEquals(m.getChurn(), dataset.getInts("Churn").get(i));
+				assertEquals(m.getAverageLOCAdded(), dataset.getDoubles("AVG LOC added").get(i), 0);
+				assertEquals(m.getAverageChurn(), dataset.getDoubles("AVG Churn").get(i), 0);
+				assertEquals(m.getAge(), dataset.getLongs("Age").get(i));
+				assertEquals(String.valueOf(m.getBuggyness()), dataset.getString("Buggyness", i));
+			}
+
+			try {
+				dataset.getInts("Age");
+				fail();
+			} catch (IllegalArgumentException e) {
+				// atteso
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/* File aperti dal processo (Linux): i temporanei delle colonne vengono rimossi subito, resta solo il descrittore */
+	private static long openFiles() throws IOException {
+		try (Stream<Path> files = Files.list(Paths.get("/proc/self/fd"))) {
+			return files.count();
+		}
+	}
+
+	/* Un dataset che non si riesce ad aprire non lascia aperti i file temporanei delle colonne */
+	public void testFailedOpenLeavesNoColumnFiles() throws IOException {
+		if (!Files.isDirectory(Paths.get("/proc/self/fd")))
+			return;
+
+		Path folder = Files.createTempDirectory("milestone1-dataset");
+		long before = openFiles();
+		try {
+			new DatasetWriter(folder.resolve("dataset.csv"), folder, folder.resolve("dataset.m1c"), "TEST").close();
+			fail();
+		} catch (IOException e) {
+			assertEquals(before, openFiles());
+		} finally {
+			Files.deleteIfExists(folder.resolve("dataset.csv"));
+			Files.delete(folder);
+		}
+	}
+
+	public void testNotColumnar() throws IOException {
+		Path path = Files.createTempFile("milestone1-dataset", ".csv");
+		try {
+			Files.write(path, Metrics.CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+			ColumnarDataset.open(path);
+			fail();
+		} catch (IOException e) {
+			// atteso
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+}
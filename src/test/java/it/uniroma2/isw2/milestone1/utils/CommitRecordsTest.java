@@ -0,0 +1,54 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the slim cache records of GitHub commits and commit list pages.
+ */
+public class CommitRecordsTest extends TestCase {
+
+	private static final String COMMIT_BODY = "{\"sha\":\"abc\",\"url\":\"https://api.github.com/\","
+			+ "\"commit\":{\"author\":{\"name\":\"Alice\",\"email\":\"a@example.com\",\"date\":\"2020-01-01T10:00:00Z\"},"
+			+ "\"message\":\"TEST-1: fix \\u00e8\"},"
+			+ "\"files\":[{\"filename\":\"src/A.java\",\"additions\":3,\"deletions\":1,\"patch\":\"@@\"},"
+			+ "{\"filename\":\"README\",\"additions\":1,\"deletions\":0}]}";
+
+	public void testCommitRoundTrip() throws Exception {
+		SymbolTable paths = new SymbolTable();
+		SymbolTable authors = new SymbolTable();
+		Commit original = CommitDecoder.decode(new JsonReader(new StringReader(COMMIT_BODY)), "abc", paths, authors);
+		byte[] record = CommitRecords.encode(original, paths, authors);
+
+		SymbolTable otherPaths = new SymbolTable();
+		SymbolTable otherAuthors = new SymbolTable();
+		Commit decoded = CommitRecords.decode(new ByteArrayInputStream(record), "abc", otherPaths, otherAuthors);
+
+		assertEquals("abc", decoded.getSha());
+		assertEquals("Alice", otherAuthors.lookup(decoded.getAuthorId()));
+		assertEquals(LocalDateTime.of(2020, 1, 1, 10, 0), decoded.getDate());
+		assertEquals(original.getMessage(), decoded.getMessage());
+		assertEquals(1, decoded.getDiffs().size());
+		assertEquals("src/A.java", otherPaths.lookup(decoded.getDiffs().get(0).getFileId()));
+		assertEquals(3, decoded.getDiffs().get(0).getAddedLines());
+		assertEquals(1, decoded.getDiffs().get(0).getDeletedLines());
+		assertEquals(1, decoded.getFileIds().length);
+	}
+
+	public void testListPageKeepsShaAndDate() {
+		JsonArray page = JsonParser.parseString("[{\"sha\":\"abc\",\"node_id\":\"x\","
+				+ "\"commit\":{\"author\":{\"name\":\"Alice\",\"date\":\"2020-01-01T10:00:00Z\"},\"message\":\"m\"}}]").getAsJsonArray();
+
+		assertEquals("[{\"sha\":\"abc\",\"commit\":{\"author\":{\"date\":\"2020-01-01T10:00:00Z\"}}}]",
+				CommitRecords.projectListPage(page).toString());
+	}
+
+}
@@ -0,0 +1,69 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.uniroma2.isw2.milestone1.TestFixtures.ListSource;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the bounded commit stream between the commit source and the replay.
+ */
+public class CommitStreamTest extends TestCase {
+
+	private static List<Commit> commits(int size) {
+		List<Commit> commits = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			Commit c = new Commit();
+			c.setSha("sha" + i);
+			commits.add(c);
+		}
+		return commits;
+	}
+
+	public void testOrderAndEnd() throws Exception {
+		ListSource source = new ListSource(commits(50));
+		try (CommitStream stream = new CommitStream(source, LocalDateTime.now(), 4, "test")) {
+			stream.start();
+			for (int i = 0; i < 50; i++)
+				assertEquals("sha" + i, stream.next().getSha());
+			assertNull(stream.next());
+			assertNull(stream.next());
+		}
+		assertTrue(source.isClosed());
+	}
+
+	public void testFailureIsRethrown() throws Exception {
+		try (CommitStream stream = new CommitStream(new ListSource(commits(0), new IOException("boom")), LocalDateTime.now(), 4, "test")) {
+			stream.start();
+			stream.next();
+			fail();
+		} catch (IOException e) {
+			assertEquals("boom", e.getMessage());
+		}
+	}
+
+	public void testErrorIsNotEndOfHistory() throws Exception {
+		Error error = new NoClassDefFoundError("boom");
+		try (CommitStream stream = new CommitStream(new ListSource(commits(0), error), LocalDateTime.now(), 4, "test")) {
+			stream.start();
+			stream.next();
+			fail();
+		} catch (IOException e) {
+			assertSame(error, e.getCause());
+		}
+	}
+
+	public void testCloseStopsBlockedProducer() throws Exception {
+		ListSource source = new ListSource(commits(100));
+		try (CommitStream stream = new CommitStream(source, LocalDateTime.now(), 1, "test")) {
+			stream.start();
+			assertEquals("sha0", stream.next().getSha());
+		}
+		assertTrue(source.isClosed());
+	}
+
+}
@@ -0,0 +1,224 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import it.uniroma2.isw2.milestone1.TempDirectoryTestCase;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
+
+/**
+ * Unit test for the GitHub commit list: target date cutoff, until window and page caching.
+ */
+public class GitHelperTest extends TempDirectoryTestCase {
+
+	private static final String OWNER = "owner";
+	private static final String PROJECT = "test";
+	private static final String COMMITS_PATH = "/repos/" + OWNER + "/" + PROJECT + "/commits";
+	private static final LocalDateTime FIRST = LocalDateTime.of(2019, 1, 1, 12, 0);
+	private static final LocalDateTime TARGET = LocalDateTime.of(2019, 2, 1, 0, 0); // until: 3 marzo
+
+	private HttpServer server;
+	private String apiUrl;
+	private List<LocalDateTime> history; // date dei commit, dal più vecchio; lo sha è la posizione
+	private List<String> pages; // richieste della lista: <pagina>@<until>
+	private List<String> details; // sha dei commit richiesti
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.history = new ArrayList<>();
+		this.pages = Collections.synchronizedList(new ArrayList<>());
+		this.details = Collections.synchronizedList(new ArrayList<>());
+
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext(COMMITS_PATH, exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals(COMMITS_PATH))
+				respond(exchange, listPage(query(exchange)).toString());
+			else
+				respond(exchange, detail(path.substring(COMMITS_PATH.length() + 1)).toString());
+		});
+		this.server.start();
+		this.apiUrl = "http://127.0.0.1:" + this.server.getAddress().getPort();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.server.stop(0);
+		super.tearDown();
+	}
+
+	private static Map<String, String> query(HttpExchange exchange) throws IOException {
+		Map<String, String> query = new HashMap<>();
+		for (String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+			String[] pair = parameter.split("=", 2);
+			query.put(pair[0], URLDecoder.decode(pair[1], StandardCharsets.UTF_8.name()));
+		}
+		return query;
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+		exchange.close();
+	}
+
+	private static String date(LocalDateTime date) {
+		return date.atOffset(ZoneOffset.UTC).toString();
+	}
+
+	/* Pagina della lista di Github: dal commit più recente, limitata a until se presente */
+	private JsonArray listPage(Map<String, String> query) {
+		int page = Integer.parseInt(query.get("page"));
+		String until = query.get("until");
+		this.pages.add(page + "@" + until);
+
+		LocalDateTime untilDate = (until == null) ? null : Instant.parse(until).atOffset(ZoneOffset.UTC).toLocalDateTime();
+		List<Integer> listed = new ArrayList<>();
+		for (int i = this.history.size() - 1; i >= 0; i--)
+			if (untilDate == null || !this.history.get(i).isAfter(untilDate))
+				listed.add(i);
+
+		JsonArray entries = new JsonArray();
+		for (int i = (page - 1) * 100; i < Math.min(page * 100, listed.size()); i++) {
+			JsonObject author = new JsonObject();
+			author.addProperty("date", date(this.history.get(listed.get(i))));
+			JsonObject commit = new JsonObject();
+			commit.add("author", author);
+			JsonObject entry = new JsonObject();
+			entry.addProperty("sha", String.valueOf(listed.get(i)));
+			entry.add("commit", commit);
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	private JsonObject detail(String sha) {
+		this.details.add(sha);
+		JsonObject author = new JsonObject();
+		author.addProperty("name", "alice");
+		author.addProperty("date", date(this.history.get(Integer.parseInt(sha))));
+		JsonObject commit = new JsonObject();
+		commit.add("author", author);
+		commit.addProperty("message", "commit " + sha);
+		JsonObject file = new JsonObject();
+		file.addProperty("filename", "src/A.java");
+		file.addProperty("additions", 1);
+		file.addProperty("deletions", 0);
+		JsonArray files = new JsonArray();
+		files.add(file);
+		JsonObject json = new JsonObject();
+		json.add("commit", commit);
+		json.add("files", files);
+		return json;
+	}
+
+	/* Un commit ogni 'hours' ore a partire da first */
+	private void history(LocalDateTime first, int commits, int hours) {
+		for (int i = 0; i < commits; i++)
+			this.history.add(first.plusHours((long) i * hours));
+	}
+
+	private List<Commit> retrieve(LocalDateTime targetDate) throws IOException, RateLimitExceededGithubAPIException {
+		GithubTokenPool tokens = new GithubTokenPool(Collections.singletonList("token"), 0, false);
+		try (GitHelper helper = new GitHelper(PROJECT, OWNER, tokens, this.apiUrl, this.getDirectory().resolve("test.pack"),
+				new SymbolTable(), new SymbolTable())) {
+			helper.setParallelism(1);
+			return helper.retrieveCommits(targetDate);
+		}
+	}
+
+	private static List<String> shas(int count) {
+		List<String> shas = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			shas.add(String.valueOf(i));
+		return shas;
+	}
+
+	/*
+	 * 20 commit giornalieri fino alla data target, 150 commit ogni 4 ore nei 30 giorni successivi (finestra di until)
+	 * e 10 commit oltre la finestra
+	 */
+	private void settledHistory() {
+		history(FIRST, 20, 24);
+		history(TARGET.plusHours(12), 150, 4);
+		history(TARGET.plusDays(60), 10, 24);
+	}
+
+	public void testListStopsAtTheFirstCommitAfterTheTarget() throws Exception {
+		settledHistory();
+
+		List<Commit> commits = retrieve(TARGET);
+		assertEquals(20, commits.size());
+		assertEquals(FIRST.plusDays(19), commits.get(19).getDate());
+
+		/* Nessun dettaglio richiesto oltre la data target; la finestra until contiene 170 commit, in due pagine */
+		assertEquals(shas(20), this.details);
+		assertEquals(2, this.pages.size());
+		assertEquals("1@2019-03-03T00:00:00Z", this.pages.get(0));
+		assertEquals("2@2019-03-03T00:00:00Z", this.pages.get(1));
+	}
+
+	public void testSettledUntilPagesAreCached() throws Exception {
+		settledHistory();
+		retrieve(TARGET);
+		this.pages.clear();
+		this.details.clear();
+
+		assertEquals(20, retrieve(TARGET).size());
+		assertTrue(this.pages.isEmpty());
+		assertTrue(this.details.isEmpty());
+	}
+
+	public void testRecentUntilPagesAreNotCached() throws Exception {
+		LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+		history(now.minusDays(20).plusHours(12), 20, 24);
+		LocalDateTime target = now.minusDays(10); // until fra 20 giorni: la finestra può ancora cambiare
+
+		assertEquals(10, retrieve(target).size());
+		assertEquals(1, this.pages.size());
+		assertEquals(shas(10), this.details);
+
+		/* La lista viene richiesta di nuovo, i dettagli dei commit restano in cache */
+		this.details.clear();
+		assertEquals(10, retrieve(target).size());
+		assertEquals(2, this.pages.size());
+		assertTrue(this.details.isEmpty());
+	}
+
+	public void testPagesStopAtTheFirstShortPage() throws Exception {
+		history(FIRST, 5, 24);
+		history(TARGET.plusHours(12), 95, 4);
+		retrieve(TARGET); // 100 commit nella finestra: una pagina piena e una vuota
+		assertEquals(2, this.pages.size());
+		assertTrue(this.pages.get(1).startsWith("2@"));
+
+		this.pages.clear();
+		this.history.add(TARGET.plusDays(20));
+		assertTrue(this.getDirectory().resolve("test.pack").toFile().delete());
+		retrieve(TARGET); // 101 commit: la seconda pagina è corta
+		assertEquals(2, this.pages.size());
+	}
+
+}
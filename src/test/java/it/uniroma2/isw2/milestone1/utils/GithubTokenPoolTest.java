@@ -0,0 +1,73 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import it.uniroma2.isw2.milestone1.exceptions.RateLimitExceededGithubAPIException;
+import junit.framework.TestCase;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Unit test for the GitHub token rotation and pacing.
+ */
+public class GithubTokenPoolTest extends TestCase {
+
+	public void testTokenWithMostRemainingRequestsIsChosen() throws Exception {
+		GithubTokenPool pool = new GithubTokenPool(Arrays.asList("a", "b"), 0, true);
+		pool.update("a", response(200, 10, resetIn(3600)));
+		pool.update("b", response(200, 100, resetIn(3600)));
+
+		assertEquals("b", pool.acquire());
+	}
+
+	public void testExhaustedTokenIsSkipped() throws Exception {
+		GithubTokenPool pool = new GithubTokenPool(Arrays.asList("a", "b"), 0, true);
+		pool.update("a", response(200, 4000, resetIn(3600)));
+		pool.update("b", response(200, 10, resetIn(3600)));
+		pool.update("a", response(403, 0, resetIn(3600)));
+
+		assertEquals("b", pool.acquire());
+	}
+
+	public void testAllTokensExhaustedWithoutWaiting() throws InterruptedIOException {
+		GithubTokenPool pool = new GithubTokenPool(Collections.singletonList("a"), 0, false);
+		pool.update("a", response(403, 0, resetIn(3600)));
+
+		try {
+			pool.acquire();
+			fail("Token esaurito restituito dal pool");
+		} catch (RateLimitExceededGithubAPIException e) {
+			// atteso
+		}
+	}
+
+	public void testRequestsArePaced() throws Exception {
+		GithubTokenPool pool = new GithubTokenPool(Collections.singletonList("a"), 20, true);
+		long start = System.nanoTime();
+		for (int i = 0; i < 40; i++) // 20 richieste in blocco, le altre 20 a 20 al secondo
+			pool.acquire();
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue("Richieste non distribuite nel tempo: " + millis + " ms", millis >= 800);
+	}
+
+	private static long resetIn(long seconds) {
+		return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + seconds;
+	}
+
+	private static Response response(int code, int remaining, long reset) {
+		return new Response.Builder()
+				.request(new Request.Builder().url("https://api.github.com/").build())
+				.protocol(Protocol.HTTP_1_1)
+				.code(code)
+				.message("")
+				.header("X-RateLimit-Remaining", String.valueOf(remaining))
+				.header("X-RateLimit-Reset", String.valueOf(reset))
+				.build();
+	}
+
+}
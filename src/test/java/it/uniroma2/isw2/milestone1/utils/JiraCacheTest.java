@@ -0,0 +1,119 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+
+import it.uniroma2.isw2.milestone1.TempDirectoryTestCase;
+import it.uniroma2.isw2.milestone1.exceptions.JiraResponseException;
+
+/**
+ * Unit test for the Jira response cache and its conditional requests.
+ */
+public class JiraCacheTest extends TempDirectoryTestCase {
+
+	private static final String ETAG = "\"v1\"";
+
+	private HttpServer server;
+	private AtomicInteger downloads;
+	private AtomicInteger revalidations;
+	private AtomicInteger failure; // codice di errore restituito, 0 per rispondere normalmente
+	private String url;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.downloads = new AtomicInteger();
+		this.revalidations = new AtomicInteger();
+		this.failure = new AtomicInteger();
+
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/project", exchange -> {
+			if (this.failure.get() != 0) {
+				exchange.sendResponseHeaders(this.failure.get(), -1);
+			} else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				this.revalidations.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+			} else {
+				this.downloads.incrementAndGet();
+				byte[] body = "{\"versions\":[]}".getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("ETag", ETAG);
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+			exchange.close();
+		});
+		this.server.start();
+		this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/project";
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.server.stop(0);
+		super.tearDown();
+	}
+
+	public void testFreshResponseIsNotDownloadedAgain() throws IOException {
+		JiraCache cache = new JiraCache(this.getDirectory(), Duration.ofHours(1), false);
+		RestHelper.getJSONObject(this.url, cache, "project");
+		RestHelper.getJSONObject(this.url, cache, "project");
+
+		assertEquals(1, this.downloads.get());
+		assertEquals(0, this.revalidations.get());
+	}
+
+	public void testExpiredResponseIsRevalidated() throws IOException {
+		JiraCache cache = new JiraCache(this.getDirectory(), Duration.ZERO, false);
+		RestHelper.getJSONObject(this.url, cache, "project");
+		assertTrue(RestHelper.getJSONObject(this.url, cache, "project").has("versions"));
+
+		assertEquals(1, this.downloads.get());
+		assertEquals(1, this.revalidations.get());
+	}
+
+	public void testOfflineReadsOnlyFromCache() throws IOException {
+		JiraCache offline = new JiraCache(this.getDirectory(), Duration.ZERO, true);
+		try {
+			RestHelper.getJSONObject(this.url, offline, "project");
+			fail("Risposta non in cache letta in modalità offline");
+		} catch (IOException e) {
+			assertEquals(0, this.downloads.get());
+		}
+
+		RestHelper.getJSONObject(this.url, new JiraCache(this.getDirectory(), Duration.ZERO, false), "project");
+		assertTrue(RestHelper.getJSONObject(this.url, offline, "project").has("versions"));
+		assertEquals(1, this.downloads.get());
+		assertEquals(0, this.revalidations.get());
+	}
+
+	public void testServerErrorServesTheExpiredCopy() throws IOException {
+		JiraCache cache = new JiraCache(this.getDirectory(), Duration.ZERO, false);
+		RestHelper.getJSONObject(this.url, cache, "project");
+
+		this.failure.set(503);
+		assertTrue(RestHelper.getJSONObject(this.url, cache, "project").has("versions"));
+	}
+
+	public void testClientErrorIsNotHiddenByTheExpiredCopy() throws IOException {
+		JiraCache cache = new JiraCache(this.getDirectory(), Duration.ZERO, false);
+		RestHelper.getJSONObject(this.url, cache, "project");
+
+		for (int code : new int[] { 401, 403, 404 }) {
+			this.failure.set(code);
+			try {
+				RestHelper.getJSONObject(this.url, cache, "project");
+				fail("Copia scaduta usata per la risposta " + code);
+			} catch (JiraResponseException e) {
+				assertEquals(code, e.getCode());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import it.uniroma2.isw2.milestone1.TempDirectoryTestCase;
+import it.uniroma2.isw2.milestone1.TestFixtures;
+import it.uniroma2.isw2.milestone1.entities.Bug;
+import it.uniroma2.isw2.milestone1.entities.Version;
+
+/**
+ * Unit test for the concurrent retrieval of the bug pages, served by an offline cache.
+ */
+public class JiraHelperTest extends TempDirectoryTestCase {
+
+	private static final String PROJECT = "TEST";
+
+	private JiraCache cache;
+	private JiraHelper helper;
+	private List<Version> versions;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.cache = new JiraCache(this.getDirectory(), Duration.ZERO, true);
+		this.helper = new JiraHelper(PROJECT, this.cache);
+
+		this.versions = TestFixtures.monthlyVersions(3);
+	}
+
+	public void testPagesAreMergedInOrder() throws IOException {
+		putPage(0, 5, 1, 2);
+		putPage(2, 5, 3, 4);
+		putPage(4, 5, 5);
+
+		assertEquals(Arrays.asList("TEST-1", "TEST-2", "TEST-3", "TEST-4", "TEST-5"), keys(this.helper.retrieveBugs(this.versions)));
+	}
+
+	public void testShortPageIsCompletedSerially() throws IOException {
+		putPage(0, 5, 1, 2);
+		putPage(2, 5, 3);
+		putPage(3, 5, 4, 5);
+		putPage(4, 5, 5);
+
+		assertEquals(Arrays.asList("TEST-1", "TEST-2", "TEST-3", "TEST-4", "TEST-5"), keys(this.helper.retrieveBugs(this.versions)));
+	}
+
+	private void putPage(int startAt, int total, int... numbers) throws IOException {
+		StringBuilder issues = new StringBuilder();
+		for (int n : numbers) {
+			if (issues.length() > 0)
+				issues.append(',');
+			issues.append("{\"key\":\"").append(PROJECT).append('-').append(n).append("\",\"fields\":{")
+				.append("\"fixVersions\":[{\"name\":\"1.2\",\"releaseDate\":\"2020-03-01\"}],")
+				.append("\"created\":\"2020-01-15T10:00:00.000+0000\",\"versions\":[]}}");
+		}
+		String body = "{\"startAt\":" + startAt + ",\"total\":" + total + ",\"issues\":[" + issues + "]}";
+		this.cache.put("search-" + startAt, this.helper.getBugsURL(startAt, 1000), body, null, null);
+	}
+
+	private static List<String> keys(List<Bug> bugs) {
+		return bugs.stream().map(Bug::getKey).collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,111 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import it.uniroma2.isw2.milestone1.TempDirectoryTestCase;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Diff;
+
+/**
+ * Unit test for the local git commit source, on a repository created in a temporary folder.
+ */
+public class LocalGitHelperTest extends TempDirectoryTestCase {
+
+	private static final Logger LOGGER = Logger.getLogger(LocalGitHelperTest.class.getName());
+
+	private SymbolTable paths;
+	private SymbolTable authors;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.paths = new SymbolTable();
+		this.authors = new SymbolTable();
+	}
+
+	public void testRenamedPath() {
+		assertEquals("src/c/D.java", LocalGitHelper.renamedPath("src/{b => c}/D.java"));
+		assertEquals("src/D.java", LocalGitHelper.renamedPath("src/{b => }/D.java"));
+		assertEquals("B.java", LocalGitHelper.renamedPath("A.java => B.java"));
+		assertEquals("A.java", LocalGitHelper.renamedPath("A.java"));
+	}
+
+	public void testHistoryIsReadInOrder() throws Exception {
+		if (!git("init", "-q")) {
+			LOGGER.log(Level.WARNING, "git non disponibile: {0} saltato", this.getName());
+			return;
+		}
+
+		write("A.java", "a\nb\nc\n");
+		write("README", "readme\n");
+		commit("Alice", "2020-01-01T10:00:00+02:00", "first");
+
+		Files.delete(this.getDirectory().resolve("A.java"));
+		write("src/B.java", "a\nb\nc\nd\n");
+		commit("Bob", "2020-01-02T10:00:00+00:00", "TEST-1: rename\n\nlong description");
+
+		write("src/B.java", "a\n");
+		commit("Alice", "2020-03-01T10:00:00+00:00", "after target");
+
+		List<Commit> commits = new LocalGitHelper(this.getDirectory(), this.paths, this.authors).retrieveCommits(LocalDateTime.of(2020, 2, 1, 0, 0));
+		assertEquals(2, commits.size());
+
+		Commit first = commits.get(0);
+		assertEquals("Alice", this.authors.lookup(first.getAuthorId()));
+		assertEquals(LocalDateTime.of(2020, 1, 1, 8, 0), first.getDate());
+		assertEquals("first", first.getMessage());
+		assertEquals(Arrays.asList("A.java:3:0"), diffs(first));
+
+		Commit second = commits.get(1);
+		assertEquals("Bob", this.authors.lookup(second.getAuthorId()));
+		assertEquals("TEST-1: rename\n\nlong description", second.getMessage());
+		assertEquals(Arrays.asList("src/B.java:1:0"), diffs(second));
+		assertEquals(1, second.getFileIds().length);
+
+		/* L'ultimo commit supera la data target quando l'output è già finito: git log non va interrotto */
+		for (int i = 0; i < 20; i++)
+			assertEquals(2, new LocalGitHelper(this.getDirectory(), this.paths, this.authors).retrieveCommits(LocalDateTime.of(2020, 2, 1, 0, 0)).size());
+	}
+
+	private List<String> diffs(Commit c) {
+		List<String> diffs = new ArrayList<>();
+		for (Diff d : c.getDiffs())
+			diffs.add(this.paths.lookup(d.getFileId()) + ":" + d.getAddedLines() + ":" + d.getDeletedLines());
+		return diffs;
+	}
+
+	private void write(String name, String content) throws IOException {
+		Path file = this.getDirectory().resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void commit(String author, String date, String message) throws Exception {
+		assertTrue(git("add", "-A"));
+		assertTrue(git("-c", "user.name=" + author, "-c", "user.email=test@example.com",
+				"commit", "-q", "--date=" + date, "-m", message));
+	}
+
+	private boolean git(String... args) throws InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add("git");
+		command.addAll(Arrays.asList(args));
+		try {
+			Process p = new ProcessBuilder(command).directory(this.getDirectory().toFile())
+					.inheritIO().start();
+			return p.waitFor() == 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import it.uniroma2.isw2.milestone1.TempDirectoryTestCase;
+
+/**
+ * Unit test for the packed cache: recovery from a torn tail and reads across mapped windows.
+ */
+public class PackedCacheTest extends TempDirectoryTestCase {
+
+	private static final int RECORDS = 20;
+
+	private static String body(int i) {
+		StringBuilder body = new StringBuilder();
+		for (int j = 0; j <= i; j++)
+			body.append("{\"sha\":\"").append(i).append('-').append(j).append("\"}");
+		return body.toString();
+	}
+
+	private Path write(int records) throws IOException {
+		Path path = this.getDirectory().resolve("test.pack");
+		try (PackedCache cache = new PackedCache(path)) {
+			for (int i = 0; i < records; i++)
+				cache.put("key" + i, body(i));
+		}
+		return path;
+	}
+
+	public void testTornTailIsTruncated() throws IOException {
+		Path path = write(RECORDS);
+		long intact;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			intact = channel.size();
+		}
+
+		/* Un record in più, interrotto a metà del corpo */
+		try (PackedCache cache = new PackedCache(path)) {
+			cache.put("torn", body(RECORDS));
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 5);
+		}
+
+		try (PackedCache cache = new PackedCache(path)) {
+			assertEquals(RECORDS, cache.size());
+			assertFalse(cache.contains("torn"));
+			for (int i = 0; i < RECORDS; i++)
+				assertEquals(body(i), cache.get("key" + i));
+
+			/* La coda viene scartata dal file e le nuove scritture ripartono dall'ultimo record integro */
+			assertEquals(intact, path.toFile().length());
+			cache.put("after", "{}");
+		}
+		try (PackedCache cache = new PackedCache(path)) {
+			assertEquals(RECORDS + 1, cache.size());
+			assertEquals("{}", cache.get("after"));
+			assertEquals(body(RECORDS - 1), cache.get("key" + (RECORDS - 1)));
+		}
+	}
+
+	public void testTornHeaderIsTruncated() throws IOException {
+		Path path = write(RECORDS);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0, 9, 'k' }), channel.size());
+		}
+
+		try (PackedCache cache = new PackedCache(path)) {
+			assertEquals(RECORDS, cache.size());
+			assertEquals(body(0), cache.get("key0"));
+		}
+	}
+
+	public void testRecordsAcrossMappedWindows() throws IOException {
+		Path path = write(RECORDS);
+
+		/* Finestre più piccole dei record: header e corpi cadono a cavallo di due finestre */
+		for (int segmentSize : new int[] { 16, 37, 256 }) {
+			try (PackedCache cache = new PackedCache(path, segmentSize)) {
+				assertEquals(RECORDS, cache.size());
+				for (int i = 0; i < RECORDS; i++)
+					assertEquals(body(i), cache.get("key" + i));
+			}
+		}
+	}
+
+}
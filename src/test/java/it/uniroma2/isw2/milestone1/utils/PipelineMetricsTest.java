@@ -0,0 +1,57 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the pipeline counters and histograms and their Prometheus export.
+ */
+public class PipelineMetricsTest extends TestCase {
+
+	private static final String COUNTER = "test_counter_total";
+	private static final String HISTOGRAM = "test_duration_seconds";
+
+	public void testPrometheusExport() throws Exception {
+		PipelineMetrics metrics = PipelineMetrics.getInstance();
+		metrics.increment(COUNTER, "result", "hit");
+		metrics.add(COUNTER, 2, "result", "hit");
+		metrics.increment(COUNTER, "result", "miss");
+		metrics.observe(HISTOGRAM, 0.003, "stage", "a\"b");
+		metrics.observe(HISTOGRAM, 0.2, "stage", "a\"b");
+		metrics.observe(HISTOGRAM, 1000, "stage", "a\"b");
+
+		assertEquals(3, metrics.count(COUNTER, "result", "hit"));
+		assertEquals(0, metrics.count(COUNTER, "result", "none"));
+
+		Path path = Files.createTempFile("milestone1-metrics", ".prom");
+		try {
+			metrics.writePrometheus(path);
+			List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+			assertTrue(lines.contains("# TYPE " + COUNTER + " counter"));
+			assertTrue(lines.contains(COUNTER + "{result=\"hit\"} 3"));
+			assertTrue(lines.contains(COUNTER + "{result=\"miss\"} 1"));
+			assertTrue(lines.contains("# TYPE " + HISTOGRAM + " histogram"));
+			assertTrue(lines.contains(HISTOGRAM + "_bucket{stage=\"a\\\"b\",le=\"0.005\"} 1"));
+			assertTrue(lines.contains(HISTOGRAM + "_bucket{stage=\"a\\\"b\",le=\"0.25\"} 2"));
+			assertTrue(lines.contains(HISTOGRAM + "_bucket{stage=\"a\\\"b\",le=\"300.0\"} 2"));
+			assertTrue(lines.contains(HISTOGRAM + "_bucket{stage=\"a\\\"b\",le=\"+Inf\"} 3"));
+			assertTrue(lines.contains(HISTOGRAM + "_count{stage=\"a\\\"b\"} 3"));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	public void testOddLabels() {
+		try {
+			PipelineMetrics.getInstance().increment(COUNTER, "result");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// atteso
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import it.uniroma2.isw2.milestone1.TestFixtures;
+import it.uniroma2.isw2.milestone1.entities.Bug;
+import it.uniroma2.isw2.milestone1.entities.Version;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the incremental proportion, against the per-bug computation on randomized histories.
+ */
+public class ProportionEngineTest extends TestCase {
+
+	private static final int HISTORIES = 200;
+
+	/* Bug aperto prima della versione ov e fixato in fv; senza IV se iv < 0 */
+	private static Bug bug(List<Version> versions, int key, int iv, int ov, int fv) {
+		JsonObject fields = new JsonObject();
+		JsonArray fixVersions = new JsonArray();
+		fixVersions.add(TestFixtures.versionJson(versions.get(fv)));
+		fields.add("fixVersions", fixVersions);
+		fields.addProperty("created", versions.get(ov).getReleaseDate().minusDays(1).toLocalDate() + "T10:00:00.000+0000");
+		JsonArray affectedVersions = new JsonArray();
+		if (iv >= 0)
+			affectedVersions.add(TestFixtures.versionJson(versions.get(iv)));
+		fields.add("versions", affectedVersions);
+
+		JsonObject issue = new JsonObject();
+		issue.addProperty("key", "TEST-" + key);
+		issue.add("fields", fields);
+		Bug b = Bug.fromJsonObject(issue, versions);
+		assertEquals(versions.get(ov), b.getOv());
+		assertEquals(versions.get(fv), b.getFv());
+		return b;
+	}
+
+	private static List<Bug> bugs(Random random, List<Version> versions) {
+		List<Bug> bugs = new ArrayList<>();
+		int count = random.nextInt(60);
+		for (int i = 0; i < count; i++) {
+			int ov = 1 + random.nextInt(versions.size() - 1);
+			int fv = ov + random.nextInt(versions.size() - ov);
+			int iv = random.nextInt(3) == 0 ? -1 : random.nextInt(ov + 1);
+			bugs.add(bug(versions, i + 1, iv, ov, fv));
+		}
+		return bugs;
+	}
+
+	/*
+	 * Calcolo per singolo bug precedente a ProportionEngine: i bug in ordine di OV (l'ordine della lista di JiraHelper),
+	 * per ciascuno la media di P sui bug fixati prima della sua OV sommati nello stesso ordine, con le posizioni nella
+	 * lista delle versioni; con 'window' solo gli ultimi bug fixati in ordine di FV
+	 */
+	private static void naive(List<Bug> bugs, List<Version> versions, int window) {
+		List<Bug> byOv = new ArrayList<>(bugs);
+		byOv.sort(Comparator.comparing(b -> b.getOv().getReleaseDate()));
+		List<Bug> byFv = new ArrayList<>(bugs);
+		byFv.sort(Comparator.comparing(b -> b.getFv().getReleaseDate()));
+
+		for (Bug b : byOv) {
+			if (b.getIv() != null)
+				continue;
+
+			List<Bug> fixed = new ArrayList<>();
+			for (Bug other : (window > 0) ? byFv : byOv)
+				if (other.getFv().getReleaseDate().isBefore(b.getOv().getReleaseDate()))
+					fixed.add(other);
+			if (window > 0 && fixed.size() > window)
+				fixed = fixed.subList(fixed.size() - window, fixed.size());
+
+			double sumP = 0.0;
+			for (Bug other : fixed) {
+				int fvIndex = versions.indexOf(other.getFv());
+				int ovIndex = versions.indexOf(other.getOv());
+				int ivIndex = versions.indexOf(other.getIv());
+				sumP += (double)(fvIndex - ivIndex) / Math.max(fvIndex - ovIndex, 1);
+			}
+
+			int p = fixed.isEmpty() ? 1 : (int)Math.ceil(sumP / fixed.size());
+			int fvIndex = versions.indexOf(b.getFv());
+			int ovIndex = versions.indexOf(b.getOv());
+			b.setIv(versions.get(Math.max(fvIndex - (fvIndex - ovIndex) * p, 0)));
+		}
+	}
+
+	private static void assertSameIvs(List<Bug> expected, List<Bug> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+			assertEquals(expected.get(i).toString(), actual.get(i).toString());
+	}
+
+	public void testSameIvsAsThePerBugComputation() {
+		Random random = new Random(7);
+		for (int h = 0; h < HISTORIES; h++) {
+			List<Version> versions = TestFixtures.monthlyVersions(2 + random.nextInt(30));
+			long seed = random.nextLong();
+			for (int window : new int[] { 0, 1, 5 }) {
+				List<Bug> expected = bugs(new Random(seed), versions);
+				naive(expected, versions, window);
+				List<Bug> actual = bugs(new Random(seed), versions);
+				new ProportionEngine(versions, window).apply(actual);
+				assertSameIvs(expected, actual);
+			}
+		}
+	}
+
+	public void testVersionIdsMustMatchTheirPosition() {
+		List<Version> versions = TestFixtures.monthlyVersions(3);
+		versions.get(1).setId(5);
+		try {
+			new ProportionEngine(versions);
+			fail("Id della versione diverso dalla posizione accettato");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("1.1"));
+		}
+	}
+
+}
@@ -0,0 +1,180 @@
+package it.uniroma2.isw2.milestone1.utils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import it.uniroma2.isw2.milestone1.TempDirectoryTestCase;
+import it.uniroma2.isw2.milestone1.TestFixtures;
+import it.uniroma2.isw2.milestone1.entities.AnalyzedFile;
+import it.uniroma2.isw2.milestone1.entities.Commit;
+import it.uniroma2.isw2.milestone1.entities.Metrics;
+import it.uniroma2.isw2.milestone1.entities.Version;
+
+/**
+ * Unit test for the replay checkpoint: round trip, unreadable state and commit digest.
+ */
+public class ReplayCheckpointTest extends TempDirectoryTestCase {
+
+	private static final String PROJECT = "TEST";
+	private static final String STATE_FILE = "state.bin";
+	private static final int VERSIONS_OFFSET = 3 * Integer.BYTES + Short.BYTES + PROJECT.length() + 2 * Integer.BYTES + 32; // numero di versioni in state.bin
+
+	private List<Version> versions;
+	private SymbolTable paths;
+	private SymbolTable authors;
+	private List<Commit> commits;
+	private List<AnalyzedFile> files;
+	private List<Metrics> rows;
+
+	/* Due file modificati da tre commit: la prima release è già calcolata, la seconda è a metà */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.versions = TestFixtures.monthlyVersions(3);
+
+		this.paths = new SymbolTable();
+		this.authors = new SymbolTable();
+		int a = this.paths.intern("src/A.java");
+		int b = this.paths.intern("src/B.java");
+		this.commits = Arrays.asList(commit(0, "alice", "2019-12-10", a, b), commit(1, "bob", "2019-12-20", a), commit(2, "alice", "2020-01-10", b));
+
+		this.files = Arrays.asList(new AnalyzedFile(a, "src/A.java", this.commits.get(0).getDate()),
+				new AnalyzedFile(b, "src/B.java", this.commits.get(0).getDate()));
+		apply(this.commits.get(0));
+		apply(this.commits.get(1));
+		this.rows = new ArrayList<>();
+		for (AnalyzedFile f : this.files)
+			this.rows.add(f.computeMetrics(this.versions.get(0), this.commits.get(1).getDate()));
+		apply(this.commits.get(2));
+	}
+
+	private Commit commit(int id, String author, String date, int... fileIds) {
+		Commit c = new Commit();
+		c.setId(id);
+		c.setSha("sha" + id);
+		c.setAuthorId(this.authors.intern(author));
+		c.setDate(LocalDate.parse(date).atTime(12, 0));
+		c.setFileIds(fileIds);
+		return c;
+	}
+
+	private void apply(Commit c) {
+		for (int fileId : c.getFileIds()) {
+			AnalyzedFile f = this.files.get(fileId);
+			f.updateChurn(10 + c.getId(), c.getId());
+			f.insertCommit(c);
+		}
+	}
+
+	private static ReplayCheckpoint.CommitsDigest digest(List<Commit> commits) {
+		ReplayCheckpoint.CommitsDigest digest = new ReplayCheckpoint.CommitsDigest();
+		for (Commit c : commits)
+			digest.add(c);
+		return digest;
+	}
+
+	/* Checkpoint dopo il terzo commit, con le righe della prima release */
+	private void save() throws IOException {
+		try (ReplayCheckpoint checkpoint = new ReplayCheckpoint(this.getDirectory(), PROJECT)) {
+			checkpoint.start(null);
+			checkpoint.appendRows(this.rows);
+			checkpoint.save(1, 2, this.versions, digest(this.commits), this.paths, this.authors, this.files);
+		}
+	}
+
+	public void testRoundTrip() throws IOException {
+		save();
+
+		SymbolTable loadedPaths = new SymbolTable();
+		SymbolTable loadedAuthors = new SymbolTable();
+		ReplayCheckpoint checkpoint = new ReplayCheckpoint(this.getDirectory(), PROJECT);
+		ReplayCheckpoint.Snapshot s = checkpoint.load(loadedPaths, loadedAuthors);
+		assertNotNull(s);
+		assertEquals(1, s.getVersionsIdx());
+		assertEquals(2, s.getCommitsIdx());
+		assertEquals(this.paths.symbols(), loadedPaths.symbols());
+		assertEquals(this.authors.symbols(), loadedAuthors.symbols());
+		assertTrue(checkpoint.matches(s, this.versions, 2));
+		assertFalse(checkpoint.matches(s, this.versions, 0));
+		assertTrue(checkpoint.matchesCommits(s, digest(this.commits)));
+
+		/* Le righe tornano byte per byte, i file riprendono dallo stesso stato */
+		try (RowSpill spill = new RowSpill(PROJECT)) {
+			checkpoint.copyRows(s, spill);
+			assertEquals(this.rows.size(), spill.getRowsCount());
+			try (RowSpill.Reader reader = spill.reader(this.versions, loadedPaths)) {
+				List<Metrics> restored = reader.nextRelease(0);
+				assertEquals(this.rows.size(), restored.size());
+				for (int i = 0; i < restored.size(); i++)
+					assertEquals(this.rows.get(i).toString(), restored.get(i).toString());
+			}
+		}
+
+		LocalDateTime date = this.commits.get(2).getDate();
+		assertEquals(this.files.size(), s.getFiles().size());
+		for (int i = 0; i < this.files.size(); i++) {
+			AnalyzedFile restored = s.getFiles().get(i);
+			assertEquals(this.files.get(i).getName(), restored.getName());
+			assertEquals(this.files.get(i).getBirth(), restored.getBirth());
+			assertEquals(this.files.get(i).computeMetrics(this.versions.get(1), date).toString(),
+					restored.computeMetrics(this.versions.get(1), date).toString());
+		}
+	}
+
+	public void testTruncatedStateIsRejected() throws IOException {
+		save();
+		Path state = this.getDirectory().resolve(STATE_FILE);
+		try (FileChannel channel = FileChannel.open(state, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() / 2);
+		}
+
+		SymbolTable loadedPaths = new SymbolTable();
+		assertNull(new ReplayCheckpoint(this.getDirectory(), PROJECT).load(loadedPaths, new SymbolTable()));
+		assertEquals(0, loadedPaths.size()); // dizionari non toccati
+	}
+
+	public void testCorruptStateIsRejected() throws IOException {
+		save();
+		Path state = this.getDirectory().resolve(STATE_FILE);
+		byte[] bytes = Files.readAllBytes(state);
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) ~bytes[i];
+		Files.write(state, bytes);
+		assertNull(new ReplayCheckpoint(this.getDirectory(), PROJECT).load(new SymbolTable(), new SymbolTable()));
+
+		/* Intestazione valida ma numero di versioni negativo: eccezione a runtime durante la lettura */
+		save();
+		bytes = Files.readAllBytes(state);
+		for (int i = VERSIONS_OFFSET; i < bytes.length; i++)
+			bytes[i] = (byte) 0xFF;
+		Files.write(state, bytes);
+		assertNull(new ReplayCheckpoint(this.getDirectory(), PROJECT).load(new SymbolTable(), new SymbolTable()));
+	}
+
+	public void testDigestMismatch() throws IOException {
+		save();
+		ReplayCheckpoint checkpoint = new ReplayCheckpoint(this.getDirectory(), PROJECT);
+		ReplayCheckpoint.Snapshot s = checkpoint.load(new SymbolTable(), new SymbolTable());
+
+		/* Stesso numero di commit con uno sha diverso, oppure un commit in più o in meno */
+		List<Commit> rewritten = new ArrayList<>(this.commits);
+		rewritten.set(1, commit(1, "bob", "2019-12-20", 0));
+		rewritten.get(1).setSha("rewritten");
+		assertFalse(checkpoint.matchesCommits(s, digest(rewritten)));
+		assertFalse(checkpoint.matchesCommits(s, digest(this.commits.subList(0, 2))));
+
+		List<Commit> longer = new ArrayList<>(this.commits);
+		longer.add(commit(3, "bob", "2020-01-20", 0));
+		assertFalse(checkpoint.matchesCommits(s, digest(longer)));
+		assertTrue(checkpoint.matchesCommits(s, digest(this.commits)));
+	}
+
+}